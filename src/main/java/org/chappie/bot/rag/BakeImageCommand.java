@@ -4,10 +4,17 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -30,6 +37,7 @@ import com.google.cloud.tools.jib.api.DockerDaemonImage;
 import com.google.cloud.tools.jib.api.Jib;
 import com.google.cloud.tools.jib.api.JibContainerBuilder;
 import com.google.cloud.tools.jib.api.RegistryImage;
+import com.google.cloud.tools.jib.api.TarImage;
 import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
 import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
 import com.google.cloud.tools.jib.api.buildplan.Platform;
@@ -42,9 +50,14 @@ import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.embedding.onnx.bgesmallenv15q.BgeSmallEnV15QuantizedEmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
 
 import picocli.CommandLine.Command;
@@ -61,7 +74,7 @@ import org.eclipse.jgit.api.errors.GitAPIException;
  * 3. Fetches HTML guides from quarkus.io at same version
  * 4. Uses Docling to convert HTML to well-formatted Markdown
  * 5. Combines Docling content with AsciiDoc metadata
- * 6. Ingests into pgvector and bakes a Docker image
+ * 6. Ingests into pgvector (or a binary COPY load file) and bakes a Docker image
  */
 @Command(
     name = "bake-image",
@@ -74,6 +87,14 @@ public class BakeImageCommand implements Runnable {
     private static final String DB_NAME = "postgres";
     private static final String DOCLING_IMAGE = "ghcr.io/docling-project/docling-serve:v1.10.0";
     private static final int EMBEDDING_DIMENSIONS = 384; // BGE Small EN v15
+    private static final String TABLE = "rag_documents";
+    private static final String INIT_DIR = "/docker-entrypoint-initdb.d";
+    private static final String LATENCY_PROBE_QUERY = "How do I secure REST endpoints with OpenID Connect?";
+    private static final int LATENCY_PROBE_RUNS = 20;
+    private static final List<String> GUIDE_PROBE_QUERIES = List.of(
+            "How do I run code on application startup in Quarkus?",
+            "What is Quarkus Dev Mode and how does it work?",
+            "How do I inject beans using CDI in Quarkus?");
 
     @Option(names = "--quarkus-version", required = true,
             description = "Target Quarkus version (e.g., 3.30.6)")
@@ -115,9 +136,40 @@ public class BakeImageCommand implements Runnable {
             description = "Maximum number of guides to process (0 = all, useful for testing)")
     int maxGuides;
 
+    @Option(names = "--filter-columns",
+            description = "Materialize topics/categories/extensions/quarkus_version as indexed columns for filtered search")
+    boolean filterColumns;
+
+    @Option(names = "--guide-index",
+            description = "Build guide-level vectors (rag_guides) for two-stage guide-then-chunk retrieval")
+    boolean guideIndex;
+
+    @Option(names = "--guide-shortlist", defaultValue = "8",
+            description = "Guides shortlisted by two-stage retrieval in the bake report (default: ${DEFAULT-VALUE})")
+    int guideShortlist;
+
+    @Option(names = "--load-file",
+            description = "Write rows to a compressed binary COPY file loaded at container init instead of a live pgvector container")
+    boolean loadFile;
+
+    @Option(names = "--external-docling",
+            description = "Use the Docling Serve already running at quarkus.docling.base-url instead of starting a container")
+    boolean externalDocling;
+
+    @Option(names = "--image-tar",
+            description = "Write the image to this tarball instead of the local Docker daemon (ignored with --push)")
+    Path imageTar;
+
+    @Option(names = "--compact-schema",
+            description = "Store guide-level metadata once in a guides table, chunks in rag_chunks, behind a rag_documents view (not with --load-file)")
+    boolean compactSchema;
+
     @Inject
     DoclingService doclingService;
 
+    @Inject
+    EmbeddingModel embeddingModel;
+
     private PostgreSQLContainer<?> pgContainer;
     private GenericContainer<?> doclingContainer;
 
@@ -129,49 +181,91 @@ public class BakeImageCommand implements Runnable {
         LOG.infof("[bake-image] Chunk size: %d, overlap: %d, semantic: %s",
                   chunkSize, chunkOverlap, semanticChunking);
 
+        if (compactSchema && loadFile) {
+            // The load file holds the flat layout; converting it would re-run at every container start
+            throw new IllegalArgumentException("--compact-schema cannot be combined with --load-file");
+        }
+
         Path workDir = null;
         try {
+            // Load the ONNX model while the containers start
+            EmbeddingModelProducer.warmUpInBackground(embeddingModel);
+
+            workDir = Files.createTempDirectory("rag-bake-" + System.nanoTime());
+            Path initDir = Files.createDirectories(workDir.resolve("init"));
+
             // 1) Start Docling Serve container on fixed port 5001
-            LOG.info("=== Starting Docling Serve container ===");
-            this.doclingContainer = new GenericContainer<>(DockerImageName.parse(DOCLING_IMAGE))
-                    .withExposedPorts(5001)
-                    .withCreateContainerCmdModifier(cmd -> {
-                        cmd.withHostConfig(
-                            new HostConfig().withPortBindings(
-                                new PortBinding(Ports.Binding.bindPort(5001), new ExposedPort(5001))
-                            )
-                        );
-                    })
-                    .waitingFor(Wait.forHttp("/health").forPort(5001));
-            this.doclingContainer.start();
-            LOG.info("[bake-image] Docling Serve started at: http://localhost:5001");
-
-            // 2) Start pgvector container
-            LOG.info("=== Starting pgvector container ===");
-            this.pgContainer = new PostgreSQLContainer<>(DockerImageName.parse(this.baseImageRef))
-                    .withDatabaseName(DB_NAME)
-                    .withUsername("postgres")
-                    .withPassword("postgres");
-            this.pgContainer.start();
-
-            String jdbcUrl = this.pgContainer.getJdbcUrl();
-            String user = this.pgContainer.getUsername();
-            String pass = this.pgContainer.getPassword();
-            LOG.infof("[bake-image] PGVector started: %s", jdbcUrl);
+            if (externalDocling) {
+                LOG.info("[bake-image] Using external Docling Serve (quarkus.docling.base-url)");
+            } else {
+                LOG.info("=== Starting Docling Serve container ===");
+                this.doclingContainer = new GenericContainer<>(DockerImageName.parse(DOCLING_IMAGE))
+                        .withExposedPorts(5001)
+                        .withCreateContainerCmdModifier(cmd -> {
+                            cmd.withHostConfig(
+                                new HostConfig().withPortBindings(
+                                    new PortBinding(Ports.Binding.bindPort(5001), new ExposedPort(5001))
+                                )
+                            );
+                        })
+                        .waitingFor(Wait.forHttp("/health").forPort(5001));
+                this.doclingContainer.start();
+                LOG.info("[bake-image] Docling Serve started at: http://localhost:5001");
+            }
+
+            // 2) Start pgvector container (not needed when writing a load file)
+            DataSource ds = null;
+            if (!loadFile) {
+                LOG.info("=== Starting pgvector container ===");
+                this.pgContainer = new PostgreSQLContainer<>(DockerImageName.parse(this.baseImageRef))
+                        .withDatabaseName(DB_NAME)
+                        .withUsername("postgres")
+                        .withPassword("postgres");
+                this.pgContainer.start();
+
+                String jdbcUrl = this.pgContainer.getJdbcUrl();
+                String user = this.pgContainer.getUsername();
+                String pass = this.pgContainer.getPassword();
+                LOG.infof("[bake-image] PGVector started: %s", jdbcUrl);
+                ds = makeDataSource(jdbcUrl, user, pass);
+            }
 
             // 3) Setup embedding store and model
             LOG.info("=== Setting up embedding infrastructure ===");
-            DataSource ds = makeDataSource(jdbcUrl, user, pass);
-
-            PgVectorEmbeddingStore store = PgVectorEmbeddingStore.datasourceBuilder()
-                    .datasource(ds)
-                    .table("rag_documents")
-                    .dimension(EMBEDDING_DIMENSIONS)
-                    .useIndex(true)
-                    .indexListSize(100)
-                    .build();
-
-            EmbeddingModel embeddingModel = new BgeSmallEnV15QuantizedEmbeddingModel();
+            EmbeddingStore<TextSegment> store;
+            EmbeddingStore<TextSegment> guideStore = null;
+            CopyFileEmbeddingStore chunkFile = null;
+            CopyFileEmbeddingStore guideFile = null;
+
+            if (loadFile) {
+                Path dataDir = Files.createDirectories(initDir.resolve("data"));
+                chunkFile = new CopyFileEmbeddingStore(dataDir.resolve(TABLE + ".copy.gz"), EMBEDDING_DIMENSIONS);
+                store = chunkFile;
+                if (guideIndex) {
+                    guideFile = new CopyFileEmbeddingStore(
+                            dataDir.resolve(GuideIndex.TABLE + ".copy.gz"), EMBEDDING_DIMENSIONS);
+                    guideStore = guideFile;
+                }
+                LOG.infof("[bake-image] Writing load files to %s", dataDir);
+            } else {
+                store = PgVectorEmbeddingStore.datasourceBuilder()
+                        .datasource(ds)
+                        .table(TABLE)
+                        .dimension(EMBEDDING_DIMENSIONS)
+                        .useIndex(true)
+                        .indexListSize(100)
+                        .build();
+
+                // Guide vectors are indexed with HNSW once loaded (see GuideIndex)
+                if (guideIndex) {
+                    guideStore = PgVectorEmbeddingStore.datasourceBuilder()
+                            .datasource(ds)
+                            .table(GuideIndex.TABLE)
+                            .dimension(EMBEDDING_DIMENSIONS)
+                            .useIndex(false)
+                            .build();
+                }
+            }
 
             DocumentSplitter splitter;
             if (semanticChunking) {
@@ -182,12 +276,6 @@ public class BakeImageCommand implements Runnable {
                 splitter = DocumentSplitters.recursive(chunkSize, chunkOverlap);
             }
 
-            EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                    .embeddingModel(embeddingModel)
-                    .embeddingStore(store)
-                    .documentSplitter(splitter)
-                    .build();
-
             // 4) Clone Quarkus repository for AsciiDoc metadata extraction
             LOG.info("=== Cloning Quarkus repository ===");
             Path quarkusRepoDir = null;
@@ -324,47 +412,95 @@ public class BakeImageCommand implements Runnable {
 
                     // Create document and ingest (using Docling-converted Markdown content + AsciiDoc metadata)
                     Document doc = Document.from(markdownContent, metadata);
-                    ingestor.ingest(doc);
+                    List<TextSegment> segments = splitter.split(doc);
+                    List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+                    store.addAll(embeddings, segments);
+
+                    if (guideStore != null) {
+                        TextSegment guide = TextSegment.from(
+                                GuideIndex.guideText(metadata, segments), GuideIndex.guideMetadata(metadata));
+                        guideStore.add(embeddingModel.embed(guide).content(), guide);
+                    }
 
                     processed++;
                     if (processed % 10 == 0 || processed == total) {
                         LOG.infof("[bake-image] Processed %d / %d guides", processed, total);
                     }
                 } catch (Exception e) {
+                    // A guide that cannot be converted is skipped, a broken load file aborts the bake
+                    if (failed(chunkFile) || failed(guideFile)) {
+                        throw new IllegalStateException("Writing the load file failed at " + adocPath, e);
+                    }
                     LOG.errorf(e, "[bake-image] Failed to process %s - skipping", adocPath);
                 }
             }
 
             LOG.infof("[bake-image] Successfully ingested %d / %d guides", processed, total);
 
-            // 6) Dump database to SQL
-            LOG.info("=== Dumping database ===");
-            workDir = Files.createTempDirectory("rag-bake-" + System.nanoTime());
-            Path initDir = Files.createDirectories(workDir.resolve("init"));
-            Path dump = initDir.resolve("01-rag.sql");
-
-            // Dump inside container to /tmp/rag.sql then copy to host
-            String inside = "/tmp/rag.sql";
-            var result = this.pgContainer.execInContainer(
-                    "bash", "-lc",
-                    "PGPASSWORD=" + this.pgContainer.getPassword() +
-                            " pg_dump -U " + this.pgContainer.getUsername() +
-                            " -d " + DB_NAME +
-                            " --no-owner --no-privileges --format=plain -f " + inside
-            );
-
-            if (result.getExitCode() != 0) {
-                throw new IllegalStateException("pg_dump failed: " + result.getStderr());
-            }
+            if (loadFile) {
+                // 6) Write the init script that loads the COPY files and builds the indexes
+                LOG.info("=== Writing load script ===");
+                writeLoadScript(initDir, chunkFile, guideFile);
+            } else {
+                long flatDumpBytes = 0;
+                if (compactSchema) {
+                    // Baseline is the plain flat table, before any filter or guide indexes;
+                    // the compact view already exposes the typed filter columns
+                    LOG.info("=== Converting to compact schema ===");
+                    flatDumpBytes = dumpBytes();
+                    convertToCompactSchema(ds);
+                } else if (filterColumns) {
+                    LOG.info("=== Materializing filter columns ===");
+                    FilterColumns.apply(ds, TABLE);
+                }
+
+                if (guideIndex) {
+                    LOG.info("=== Indexing guide vectors ===");
+                    GuideIndex.createIndexes(ds, TABLE, filterColumns || compactSchema);
+                }
 
-            this.pgContainer.copyFileFromContainer(inside, dump.toString());
-            LOG.infof("[bake-image] Dumped SQL -> %s", dump);
+                // Reports run against the final schema, as shipped in the image
+                if (filterColumns) {
+                    reportFilteredQueryLatency(ds);
+                }
+                if (guideIndex) {
+                    reportHierarchicalSearch(ds);
+                }
+
+                // 6) Dump database to SQL
+                LOG.info("=== Dumping database ===");
+                Path dump = initDir.resolve("01-rag.sql");
+
+                // Dump inside container to /tmp/rag.sql then copy to host
+                String inside = "/tmp/rag.sql";
+                var result = this.pgContainer.execInContainer(
+                        "bash", "-lc",
+                        "PGPASSWORD=" + this.pgContainer.getPassword() +
+                                " pg_dump -U " + this.pgContainer.getUsername() +
+                                " -d " + DB_NAME +
+                                " --no-owner --no-privileges --format=plain -f " + inside
+                );
+
+                if (result.getExitCode() != 0) {
+                    throw new IllegalStateException("pg_dump failed: " + result.getStderr());
+                }
+
+                this.pgContainer.copyFileFromContainer(inside, dump.toString());
+                LOG.infof("[bake-image] Dumped SQL -> %s", dump);
+
+                if (compactSchema) {
+                    long compactDumpBytes = Files.size(dump);
+                    LOG.infof("[bake-image] Image data (SQL dump): %.1f MB flat -> %.1f MB compact (%s)",
+                              flatDumpBytes / (1024.0 * 1024.0), compactDumpBytes / (1024.0 * 1024.0),
+                              change(flatDumpBytes, compactDumpBytes));
+                }
+            }
 
             // 7) Build and push the image with Jib
             LOG.info("=== Building Docker image ===");
             FileEntriesLayer initLayer = FileEntriesLayer.builder()
                     .setName("initdb-sql")
-                    .addEntryRecursive(initDir, AbsoluteUnixPath.get("/docker-entrypoint-initdb.d"))
+                    .addEntryRecursive(initDir, AbsoluteUnixPath.get(INIT_DIR))
                     .build();
 
             JibContainerBuilder jib = Jib.from(baseImageRef).addFileEntriesLayer(initLayer);
@@ -382,6 +518,8 @@ public class BakeImageCommand implements Runnable {
                     registry.addCredential(registryUsername, registryPassword);
                 }
                 containerizer = Containerizer.to(registry);
+            } else if (imageTar != null) {
+                containerizer = Containerizer.to(TarImage.at(imageTar).named(targetImageRef));
             } else {
                 containerizer = Containerizer.to(DockerDaemonImage.named(targetImageRef));
             }
@@ -431,6 +569,229 @@ public class BakeImageCommand implements Runnable {
         }
     }
 
+    /**
+     * Close the COPY files and write the init script that loads them into a fresh database,
+     * then builds the same indexes a live bake would have.
+     *
+     * The script runs on the first start of every container, so each table is written once:
+     * generated filter columns are added while the table is still empty (COPY computes them)
+     * and every index is built once, after loading.
+     */
+    private void writeLoadScript(Path initDir, CopyFileEmbeddingStore chunks, CopyFileEmbeddingStore guides)
+            throws IOException {
+        List<String> sql = new ArrayList<>();
+        sql.add("CREATE EXTENSION IF NOT EXISTS vector");
+
+        chunks.close();
+        sql.add(CopyFileEmbeddingStore.createTableSql(TABLE, EMBEDDING_DIMENSIONS));
+        if (filterColumns) {
+            sql.add(FilterColumns.addColumnsSql(TABLE));
+        }
+        sql.add(CopyFileEmbeddingStore.copySql(TABLE, INIT_DIR + "/data/" + chunks.file().getFileName()));
+        sql.add(CopyFileEmbeddingStore.createIndexSql(TABLE, 100));
+        if (filterColumns) {
+            sql.addAll(FilterColumns.indexStatements(TABLE));
+            LOG.info("[bake-image] Filtered query latency is not measured with --load-file (no live database)");
+        }
+        logLoadFile(chunks);
+
+        // Without filter columns the guide index adds an expression index and analyzes the chunk table
+        boolean chunksAnalyzed = false;
+        if (guides != null) {
+            guides.close();
+            sql.add(CopyFileEmbeddingStore.createTableSql(GuideIndex.TABLE, EMBEDDING_DIMENSIONS));
+            sql.add(CopyFileEmbeddingStore.copySql(GuideIndex.TABLE, INIT_DIR + "/data/" + guides.file().getFileName()));
+            sql.addAll(GuideIndex.statements(TABLE, filterColumns));
+            chunksAnalyzed = !filterColumns;
+            logLoadFile(guides);
+            LOG.info("[bake-image] Two-stage search is not measured with --load-file (no live database)");
+        }
+
+        if (!chunksAnalyzed) {
+            sql.add("ANALYZE " + TABLE);
+        }
+
+        Path script = initDir.resolve("01-rag.sql");
+        Files.write(script, sql.stream().map(statement -> statement + ";").toList());
+        LOG.infof("[bake-image] Load script -> %s", script);
+    }
+
+    /**
+     * Move the flat table into the compact schema and log the storage saved.
+     */
+    private void convertToCompactSchema(DataSource ds) throws SQLException {
+        long flatBytes = CompactSchema.relationBytes(ds, TABLE);
+        double flatRow = CompactSchema.avgRowBytes(ds, TABLE);
+
+        CompactSchema.apply(ds, TABLE, EMBEDDING_DIMENSIONS, 100);
+
+        long compactBytes = CompactSchema.relationBytes(ds, CompactSchema.GUIDES_TABLE, CompactSchema.CHUNKS_TABLE);
+        double compactRow = CompactSchema.avgRowBytes(ds, CompactSchema.CHUNKS_TABLE);
+
+        LOG.infof("[bake-image] Avg row size: %.0f bytes flat -> %.0f bytes compact (%s)",
+                  flatRow, compactRow, change(flatRow, compactRow));
+        LOG.infof("[bake-image] Table size (incl. TOAST and indexes): %.1f MB flat -> %.1f MB compact (%s)",
+                  flatBytes / (1024.0 * 1024.0), compactBytes / (1024.0 * 1024.0),
+                  change(flatBytes, compactBytes));
+    }
+
+    /**
+     * @return Relative size change such as "-42.0%", "n/a" when there is no baseline
+     */
+    private static String change(double before, double after) {
+        return before > 0 ? String.format(Locale.ROOT, "%+.1f%%", 100.0 * (after - before) / before) : "n/a";
+    }
+
+    /**
+     * Size of a plain-format pg_dump of the current database, without copying it out.
+     */
+    private long dumpBytes() throws IOException, InterruptedException {
+        var result = this.pgContainer.execInContainer(
+                "bash", "-lc",
+                "set -o pipefail; PGPASSWORD=" + this.pgContainer.getPassword() +
+                        " pg_dump -U " + this.pgContainer.getUsername() +
+                        " -d " + DB_NAME +
+                        " --no-owner --no-privileges --format=plain | wc -c"
+        );
+        if (result.getExitCode() != 0) {
+            throw new IllegalStateException("pg_dump failed: " + result.getStderr());
+        }
+        return Long.parseLong(result.getStdout().trim());
+    }
+
+    private static boolean failed(CopyFileEmbeddingStore store) {
+        return store != null && store.failed();
+    }
+
+    private static void logLoadFile(CopyFileEmbeddingStore store) throws IOException {
+        LOG.infof("[bake-image] Wrote %d rows -> %s (%.1f MB)",
+                  store.rowCount(), store.file(), Files.size(store.file()) / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Time a few filtered similarity searches against the freshly baked table and log whether
+     * the planner uses the filter/vector indexes. Filters use the most common topics and
+     * categories so the numbers are representative of real narrowing queries.
+     */
+    private void reportFilteredQueryLatency(DataSource ds) throws SQLException {
+        FilteredVectorSearch search = new FilteredVectorSearch(ds, TABLE, true, 0);
+        Embedding query = embeddingModel.embed(LATENCY_PROBE_QUERY).content();
+
+        Map<String, Filter> filters = new LinkedHashMap<>();
+        filters.put("(none)", null);
+        for (String key : List.of("topics", "categories")) {
+            for (String value : mostCommonValues(ds, key, 2)) {
+                filters.put(key + "=" + value, MetadataFilterBuilder.metadataKey(key).isEqualTo(value));
+            }
+        }
+
+        for (Map.Entry<String, Filter> entry : filters.entrySet()) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(query)
+                    .maxResults(10)
+                    .filter(entry.getValue())
+                    .build();
+
+            int hits = search.search(request).matches().size(); // warm-up
+            long[] micros = new long[LATENCY_PROBE_RUNS];
+            for (int i = 0; i < LATENCY_PROBE_RUNS; i++) {
+                long start = System.nanoTime();
+                search.search(request);
+                micros[i] = (System.nanoTime() - start) / 1_000;
+            }
+            Arrays.sort(micros);
+
+            String plan = search.explain(request);
+            String indexes = List.of("_gin", "_idx", "ivfflat", "hnsw").stream()
+                    .filter(plan::contains)
+                    .collect(Collectors.joining(","));
+
+            LOG.infof("[bake-image] Filtered search %-40s hits=%2d p50=%.2f ms max=%.2f ms indexes=[%s]",
+                      entry.getKey(), hits, micros[micros.length / 2] / 1000.0,
+                      micros[micros.length - 1] / 1000.0, indexes.isEmpty() ? "seq scan" : indexes);
+        }
+    }
+
+    /**
+     * Compare flat chunk search with two-stage guide-then-chunk search for a few broad
+     * questions: top guides, latency (p50/max over repeated runs, alternating which approach
+     * goes first) and the rows each approach reads according to EXPLAIN ANALYZE.
+     */
+    private void reportHierarchicalSearch(DataSource ds) throws SQLException {
+        FilteredVectorSearch chunks = new FilteredVectorSearch(ds, TABLE, filterColumns || compactSchema, 0);
+        FilteredVectorSearch guides = new FilteredVectorSearch(ds, GuideIndex.TABLE, false, 0);
+        HierarchicalSearch hierarchical = new HierarchicalSearch(guides, chunks, guideShortlist);
+
+        for (String question : GUIDE_PROBE_QUERIES) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embeddingModel.embed(question).content())
+                    .maxResults(10)
+                    .build();
+
+            // Warm-up, also provides the top guides
+            List<EmbeddingMatch<TextSegment>> flat = chunks.search(request).matches();
+            List<EmbeddingMatch<TextSegment>> twoStage = hierarchical.search(request).matches();
+
+            long[] flatMicros = new long[LATENCY_PROBE_RUNS];
+            long[] twoStageMicros = new long[LATENCY_PROBE_RUNS];
+            for (int i = 0; i < LATENCY_PROBE_RUNS; i++) {
+                if (i % 2 == 0) {
+                    flatMicros[i] = timeMicros(() -> chunks.search(request));
+                    twoStageMicros[i] = timeMicros(() -> hierarchical.search(request));
+                } else {
+                    twoStageMicros[i] = timeMicros(() -> hierarchical.search(request));
+                    flatMicros[i] = timeMicros(() -> chunks.search(request));
+                }
+            }
+            Arrays.sort(flatMicros);
+            Arrays.sort(twoStageMicros);
+
+            FilteredVectorSearch.PlanWork flatWork = chunks.measure(request);
+            List<String> shortlist = hierarchical.shortlist(request);
+            FilteredVectorSearch.PlanWork twoStageWork = guides.measure(hierarchical.guideRequest(request));
+            if (!shortlist.isEmpty()) {
+                twoStageWork = twoStageWork.plus(chunks.measure(hierarchical.chunkRequest(request, shortlist)));
+            }
+
+            LOG.infof("[bake-image] Query: %s", question);
+            LOG.infof("[bake-image]   flat      p50=%.2f ms max=%.2f ms, read %d rows / %d buffers, top guides %s",
+                      flatMicros[LATENCY_PROBE_RUNS / 2] / 1000.0, flatMicros[LATENCY_PROBE_RUNS - 1] / 1000.0,
+                      flatWork.rowsRead, flatWork.buffers, topGuides(flat));
+            LOG.infof("[bake-image]   two-stage p50=%.2f ms max=%.2f ms, read %d rows / %d buffers, top guides %s",
+                      twoStageMicros[LATENCY_PROBE_RUNS / 2] / 1000.0, twoStageMicros[LATENCY_PROBE_RUNS - 1] / 1000.0,
+                      twoStageWork.rowsRead, twoStageWork.buffers, topGuides(twoStage));
+        }
+    }
+
+    private static long timeMicros(Runnable search) {
+        long start = System.nanoTime();
+        search.run();
+        return (System.nanoTime() - start) / 1_000;
+    }
+
+    private static List<String> topGuides(List<EmbeddingMatch<TextSegment>> matches) {
+        return matches.stream()
+                .map(m -> m.embedded().metadata().getString("title"))
+                .distinct()
+                .limit(3)
+                .toList();
+    }
+
+    private static List<String> mostCommonValues(DataSource ds, String column, int limit) throws SQLException {
+        List<String> values = new ArrayList<>();
+        String sql = "SELECT v, count(*) FROM " + TABLE + ", unnest(" + column + ") v " +
+                     "GROUP BY v ORDER BY count(*) DESC LIMIT ?";
+        try (Connection conn = ds.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    values.add(rs.getString(1));
+                }
+            }
+        }
+        return values;
+    }
+
     private static DataSource makeDataSource(String jdbc, String user, String pass) {
         PGSimpleDataSource ds = new PGSimpleDataSource();
         ds.setURL(jdbc);
@@ -0,0 +1,167 @@
+package org.chappie.bot.rag;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Normalized storage for the embedding table: guide-level metadata is stored once per guide
+ * instead of on every chunk.
+ *
+ * guides      guide_id smallint, repo_path, title, url, summary, topics, categories,
+ *             extensions, quarkus_version, plus generated topics_list, categories_list,
+ *             extensions_list text[] columns with GIN indexes
+ * rag_chunks  embedding_id, guide_id, embedding, text, metadata (section-level keys only)
+ * rag_documents  view with the original flat shape (embedding_id, embedding, text, metadata),
+ *             plus the typed filter columns from {@link FilterColumns}
+ *
+ * Filters on the view's typed columns resolve against guides (one row per guide, the list
+ * columns GIN-indexed) and reach the chunks through the guide_id join, so the chunk table
+ * needs no filter indexes of its own.
+ *
+ * Text columns use LZ4 TOAST compression; every value is written anew during the conversion,
+ * so the size report after it already reflects LZ4. The chunk IVFFlat index keeps the
+ * rag_documents_ivfflat_index name, so PgVectorEmbeddingStore clients that run
+ * CREATE INDEX IF NOT EXISTS against the view skip it.
+ */
+public class CompactSchema {
+
+    private static final Logger LOG = Logger.getLogger(CompactSchema.class);
+
+    public static final String GUIDES_TABLE = "guides";
+    public static final String CHUNKS_TABLE = "rag_chunks";
+
+    /** Metadata keys that describe the whole guide and move to the guides table. */
+    static final List<String> GUIDE_KEYS = List.of(
+            "repo_path", "title", "url", "summary", "topics", "categories", "extensions", "quarkus_version");
+
+    /**
+     * Build the statements that move a flat embedding table into the compact schema and
+     * replace it by a compatibility view.
+     *
+     * @param table     Flat embedding table to convert (e.g. rag_documents), becomes the view
+     * @param dimension Embedding dimension
+     * @param lists     IVFFlat lists for the chunk index
+     */
+    public static List<String> statements(String table, int dimension, int lists) {
+        List<String> sql = new ArrayList<>();
+
+        String guideColumns = GUIDE_KEYS.stream()
+                .map(key -> key + " text COMPRESSION lz4")
+                .collect(Collectors.joining(", "));
+        String listColumns = FilterColumns.ARRAY_COLUMNS.stream().sorted()
+                .map(key -> ", " + listColumn(key) + " text[] GENERATED ALWAYS AS (" +
+                        FilterColumns.arrayExpression(key) + ") STORED")
+                .collect(Collectors.joining());
+        sql.add("CREATE TABLE " + GUIDES_TABLE + " (guide_id smallint PRIMARY KEY, " + guideColumns + listColumns + ")");
+        sql.add("CREATE UNIQUE INDEX " + GUIDES_TABLE + "_repo_path_idx ON " + GUIDES_TABLE + " (repo_path)");
+        for (String key : FilterColumns.ARRAY_COLUMNS.stream().sorted().toList()) {
+            sql.add("CREATE INDEX " + GUIDES_TABLE + "_" + key + "_gin ON " + GUIDES_TABLE +
+                    " USING gin (" + listColumn(key) + ")");
+        }
+
+        // One row per repo_path; guide fields are identical on all of its chunks
+        String guideValues = GUIDE_KEYS.stream()
+                .map(key -> "metadata->>'" + key + "' AS " + key)
+                .collect(Collectors.joining(", "));
+        sql.add("INSERT INTO " + GUIDES_TABLE + " (guide_id, " + String.join(", ", GUIDE_KEYS) + ") " +
+                "SELECT row_number() OVER (ORDER BY repo_path), " + String.join(", ", GUIDE_KEYS) +
+                " FROM (SELECT DISTINCT ON (metadata->>'repo_path') " + guideValues +
+                " FROM " + table + " WHERE metadata->>'repo_path' IS NOT NULL" +
+                " ORDER BY metadata->>'repo_path') g");
+
+        sql.add("CREATE TABLE " + CHUNKS_TABLE + " (embedding_id UUID PRIMARY KEY, " +
+                "guide_id smallint REFERENCES " + GUIDES_TABLE + ", embedding vector(" + dimension + "), " +
+                "text TEXT COMPRESSION lz4, metadata JSON COMPRESSION lz4)");
+        String guideKeyArray = GUIDE_KEYS.stream().map(key -> "'" + key + "'").collect(Collectors.joining(", "));
+        // INSERT ... SELECT copies already compressed datums as they are (pglz from the flat table);
+        // "text || ''" builds a new value, so it is compressed with the column's LZ4 on insert
+        sql.add("INSERT INTO " + CHUNKS_TABLE + " (embedding_id, guide_id, embedding, text, metadata) " +
+                "SELECT d.embedding_id, g.guide_id, d.embedding, d.text || '', " +
+                "(d.metadata::jsonb - ARRAY[" + guideKeyArray + "])::json " +
+                "FROM " + table + " d LEFT JOIN " + GUIDES_TABLE + " g ON g.repo_path = d.metadata->>'repo_path'");
+
+        // Dropping the flat table frees its index names for the chunk table
+        sql.add("DROP TABLE " + table);
+        sql.add("CREATE INDEX " + table + "_ivfflat_index ON " + CHUNKS_TABLE +
+                " USING ivfflat (embedding vector_cosine_ops) WITH (lists = " + lists + ")");
+        sql.add("CREATE INDEX " + CHUNKS_TABLE + "_guide_id_idx ON " + CHUNKS_TABLE + " (guide_id)");
+
+        String guideObject = GUIDE_KEYS.stream()
+                .map(key -> "'" + key + "', g." + key)
+                .collect(Collectors.joining(", "));
+        String filterColumns = FilterColumns.ARRAY_COLUMNS.stream().sorted()
+                .map(key -> "g." + listColumn(key) + " AS " + key)
+                .collect(Collectors.joining(", "));
+        String scalarColumns = FilterColumns.SCALAR_COLUMNS.stream().sorted()
+                .map(key -> "g." + key)
+                .collect(Collectors.joining(", "));
+        sql.add("CREATE VIEW " + table + " AS SELECT c.embedding_id, c.embedding, c.text, " +
+                "(coalesce(c.metadata::jsonb, '{}'::jsonb) || jsonb_strip_nulls(jsonb_build_object(" + guideObject +
+                ")))::json AS metadata, " + filterColumns + ", " + scalarColumns +
+                " FROM " + CHUNKS_TABLE + " c LEFT JOIN " + GUIDES_TABLE + " g ON g.guide_id = c.guide_id");
+
+        sql.add("ANALYZE " + GUIDES_TABLE);
+        sql.add("ANALYZE " + CHUNKS_TABLE);
+        return sql;
+    }
+
+    private static String listColumn(String key) {
+        return key + "_list";
+    }
+
+    public static void apply(DataSource ds, String table, int dimension, int lists) throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                for (String sql : statements(table, dimension, lists)) {
+                    LOG.debugf("[compact-schema] %s", sql);
+                    st.execute(sql);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        LOG.infof("[compact-schema] Converted %s into %s + %s with a compatibility view", table, GUIDES_TABLE, CHUNKS_TABLE);
+    }
+
+    /**
+     * @return Total on-disk size (heap, TOAST, indexes) of the given tables
+     */
+    public static long relationBytes(DataSource ds, String... tables) throws SQLException {
+        long total = 0;
+        try (Connection conn = ds.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT pg_total_relation_size(?::regclass)")) {
+            for (String table : tables) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    total += rs.getLong(1);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Average stored row size in bytes (after TOAST compression)
+     */
+    public static double avgRowBytes(DataSource ds, String table) throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT coalesce(avg(pg_column_size(t.*)), 0) FROM " + table + " t")) {
+            rs.next();
+            return rs.getDouble(1);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.chappie.bot.rag;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+/**
+ * Write-only embedding store that streams rows into a gzip-compressed PostgreSQL binary COPY
+ * file instead of a live database.
+ *
+ * Rows use the PgVectorEmbeddingStore table layout (metadata stored as JSON):
+ * embedding_id UUID PRIMARY KEY, embedding vector(n), text TEXT NULL, metadata JSON NULL
+ *
+ * The file is loaded with {@link #copySql(String, String)} (e.g. from a
+ * /docker-entrypoint-initdb.d script), so ingestion needs neither Docker nor Postgres.
+ *
+ * Each add call encodes its rows completely before writing, so a bad row never leaves a
+ * partial tuple. An I/O error marks the store failed: the file is unusable and every later
+ * call throws, so callers cannot ship it by accident.
+ */
+public class CopyFileEmbeddingStore implements EmbeddingStore<TextSegment>, Closeable {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path file;
+    private final int dimension;
+    private final DataOutputStream out;
+    private long rows;
+    private IOException failure;
+
+    /**
+     * @param file      Target file (conventionally *.copy.gz)
+     * @param dimension Embedding dimension, checked for every row
+     */
+    public CopyFileEmbeddingStore(Path file, int dimension) throws IOException {
+        this.file = file;
+        this.dimension = dimension;
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file), 1 << 16), 1 << 16));
+
+        // Header: signature, flags, header extension length
+        out.write(SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    /**
+     * Table definition matching PgVectorEmbeddingStore with default (combined JSON) metadata.
+     */
+    public static String createTableSql(String table, int dimension) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (embedding_id UUID PRIMARY KEY, embedding vector(" +
+               dimension + "), text TEXT NULL, metadata JSON NULL)";
+    }
+
+    /**
+     * Server-side COPY of a file written by this store.
+     *
+     * @param table         Target table
+     * @param containerPath Path of the .copy.gz file inside the database container
+     */
+    public static String copySql(String table, String containerPath) {
+        return "COPY " + table + " (embedding_id, embedding, text, metadata) FROM PROGRAM 'gzip -dc " +
+               containerPath + "' WITH (FORMAT binary)";
+    }
+
+    /**
+     * IVFFlat index as created by PgVectorEmbeddingStore, built after loading so the lists are
+     * trained on the real data.
+     */
+    public static String createIndexSql(String table, int lists) {
+        return "CREATE INDEX IF NOT EXISTS " + table + "_ivfflat_index ON " + table +
+               " USING ivfflat (embedding vector_cosine_ops) WITH (lists = " + lists + ")";
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = randomIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = randomIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != embeddings.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size, got " +
+                    ids.size() + ", " + embeddings.size() + ", " + (embedded == null ? "null" : embedded.size()));
+        }
+
+        ByteArrayOutputStream tuples = new ByteArrayOutputStream();
+        DataOutputStream buffer = new DataOutputStream(tuples);
+        for (int i = 0; i < embeddings.size(); i++) {
+            encodeRow(buffer, ids.get(i), embeddings.get(i), embedded == null ? null : embedded.get(i));
+        }
+        write(tuples.toByteArray(), embeddings.size());
+    }
+
+    public synchronized long rowCount() {
+        return rows;
+    }
+
+    /**
+     * @return true if a write failed and the file must not be used
+     */
+    public synchronized boolean failed() {
+        return failure != null;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Write the COPY trailer and flush the compressed stream.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (failure != null) {
+            out.close();
+            throw new IOException("Incomplete COPY file " + file, failure);
+        }
+        out.writeShort(-1);
+        out.close();
+    }
+
+    private synchronized void write(byte[] tuples, int count) {
+        if (failure != null) {
+            throw new IllegalStateException("Earlier write to " + file + " failed", failure);
+        }
+        try {
+            out.write(tuples);
+            rows += count;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Failed to write " + file, e);
+        }
+    }
+
+    private void encodeRow(DataOutputStream buffer, String id, Embedding embedding, TextSegment segment) {
+        float[] vector = embedding.vector();
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions, got " + vector.length);
+        }
+        UUID uuid = UUID.fromString(id);
+        byte[] text;
+        byte[] metadata;
+        try {
+            text = segment == null ? null : segment.text().getBytes(StandardCharsets.UTF_8);
+            metadata = segment == null ? null : MAPPER.writeValueAsBytes(segment.metadata().toMap());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize metadata for " + id, e);
+        }
+
+        try {
+            buffer.writeShort(4);
+
+            // embedding_id uuid
+            buffer.writeInt(16);
+            buffer.writeLong(uuid.getMostSignificantBits());
+            buffer.writeLong(uuid.getLeastSignificantBits());
+
+            // embedding vector: int16 dim, int16 unused, float4[dim]
+            buffer.writeInt(4 + 4 * vector.length);
+            buffer.writeShort(vector.length);
+            buffer.writeShort(0);
+            for (float v : vector) {
+                buffer.writeFloat(v);
+            }
+
+            // text, metadata json (binary json is plain UTF-8 text)
+            writeField(buffer, text);
+            writeField(buffer, metadata);
+        } catch (IOException e) {
+            // In-memory buffer
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeField(DataOutputStream buffer, byte[] value) throws IOException {
+        if (value == null) {
+            buffer.writeInt(-1);
+            return;
+        }
+        buffer.writeInt(value.length);
+        buffer.write(value);
+    }
+
+    private static List<String> randomIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
@@ -9,7 +9,9 @@ import picocli.CommandLine.Command;
     name = "docling-rag",
     mixinStandardHelpOptions = true,
     subcommands = {
-        BakeImageCommand.class
+        BakeImageCommand.class,
+        LoadTestCommand.class,
+        WarmupCommand.class
     },
     description = "Docling-based RAG helper CLI for Quarkus docs"
 )
@@ -0,0 +1,70 @@
+package org.chappie.bot.rag;
+
+import java.lang.management.ManagementFactory;
+
+import org.jboss.logging.Logger;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.bgesmallenv15q.BgeSmallEnV15QuantizedEmbeddingModel;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.enterprise.inject.Produces;
+
+/**
+ * Produces the application-wide BGE Small EN v15 (quantized) embedding model.
+ *
+ * The bean is application scoped, so the ONNX model is created on first use, warmed with one
+ * inference and then shared by all commands: runs that never embed pay nothing and runs that
+ * do load it only once. Commands that start containers first can call
+ * {@link #warmUpInBackground(EmbeddingModel)} to overlap the model load with container startup.
+ */
+@ApplicationScoped
+public class EmbeddingModelProducer {
+
+    private static final Logger LOG = Logger.getLogger(EmbeddingModelProducer.class);
+    private static final String WARM_UP_TEXT = "Quarkus supersonic subatomic Java";
+
+    /**
+     * Takes precedence over an in-process model bean registered by quarkus-langchain4j, so
+     * every injection point gets this single warmed instance.
+     */
+    @Produces
+    @ApplicationScoped
+    @Alternative
+    @Priority(1)
+    EmbeddingModel embeddingModel() {
+        long t0 = System.nanoTime();
+        EmbeddingModel model = new BgeSmallEnV15QuantizedEmbeddingModel();
+        long loaded = System.nanoTime();
+
+        // First inference initializes the ONNX session's execution plan
+        model.embed(WARM_UP_TEXT);
+        long warmed = System.nanoTime();
+
+        LOG.infof("[embedding-model] Loaded in %d ms, warm-up %d ms, startup-to-first-embedding %d ms",
+                  (loaded - t0) / 1_000_000, (warmed - loaded) / 1_000_000, millisSinceJvmStart());
+        return model;
+    }
+
+    /**
+     * Create the model on a dedicated daemon thread. Callers that use it before the warm-up
+     * finishes wait for the same instance instead of loading a second one.
+     *
+     * @param model Injected (client proxy) model
+     */
+    public static void warmUpInBackground(EmbeddingModel model) {
+        Thread.ofPlatform().name("embedding-model-warm-up").daemon().start(() -> {
+            try {
+                model.embed(WARM_UP_TEXT);
+            } catch (RuntimeException e) {
+                // The first foreground use retries the creation and reports the failure
+                LOG.debugf("[embedding-model] Background warm-up failed: %s", e.getMessage());
+            }
+        });
+    }
+
+    static long millisSinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
@@ -0,0 +1,119 @@
+package org.chappie.bot.rag;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Materializes filterable guide metadata as typed, indexed columns on the embedding table.
+ *
+ * The pgvector store keeps all metadata inside a single JSON column, where values such as
+ * topics are plain comma-separated strings. This adds generated columns next to it:
+ * topics      text[]  (GIN)
+ * categories  text[]  (GIN)
+ * extensions  text[]  (GIN)
+ * quarkus_version text (B-tree)
+ * repo_path   text    (B-tree, used by the second stage of {@link HierarchicalSearch})
+ *
+ * Generated columns are computed by Postgres on insert, so rows written later by any
+ * client (including a plain PgVectorEmbeddingStore) stay in sync with the JSON metadata.
+ */
+public class FilterColumns {
+
+    private static final Logger LOG = Logger.getLogger(FilterColumns.class);
+
+    /** Metadata keys stored as comma-separated lists and materialized as text[] columns. */
+    public static final Set<String> ARRAY_COLUMNS = Set.of("topics", "categories", "extensions");
+
+    /** Metadata keys materialized as plain text columns. */
+    public static final Set<String> SCALAR_COLUMNS = Set.of("quarkus_version", "repo_path");
+
+    /**
+     * Build the DDL statements that add the filter columns and their indexes.
+     *
+     * All columns are added by a single ALTER TABLE: each stored generated column rewrites the
+     * table and rebuilds its existing indexes, so adding them together costs one rewrite.
+     * The indexes are created afterwards.
+     *
+     * @param table Embedding table name (e.g. rag_documents)
+     * @return Statements in execution order, idempotent
+     */
+    public static List<String> statements(String table) {
+        List<String> sql = new ArrayList<>();
+        sql.add(addColumnsSql(table));
+        sql.addAll(indexStatements(table));
+        sql.add("ANALYZE " + table);
+        return sql;
+    }
+
+    /**
+     * Single ALTER TABLE adding all generated filter columns. Cheap on an empty table, so load
+     * scripts run it before COPY and the columns are computed while loading.
+     */
+    public static String addColumnsSql(String table) {
+        List<String> columns = new ArrayList<>();
+        for (String column : ARRAY_COLUMNS.stream().sorted().toList()) {
+            columns.add("ADD COLUMN IF NOT EXISTS " + column + " text[] " +
+                    "GENERATED ALWAYS AS (" + arrayExpression("metadata->>'" + column + "'") + ") STORED");
+        }
+        for (String column : SCALAR_COLUMNS.stream().sorted().toList()) {
+            columns.add("ADD COLUMN IF NOT EXISTS " + column + " text " +
+                    "GENERATED ALWAYS AS (metadata->>'" + column + "') STORED");
+        }
+        return "ALTER TABLE " + table + " " + String.join(", ", columns);
+    }
+
+    /**
+     * GIN indexes on the array columns and B-tree indexes on the scalar columns.
+     */
+    public static List<String> indexStatements(String table) {
+        List<String> sql = new ArrayList<>();
+        for (String column : ARRAY_COLUMNS.stream().sorted().toList()) {
+            sql.add("CREATE INDEX IF NOT EXISTS " + table + "_" + column + "_gin ON " + table +
+                    " USING gin (" + column + ")");
+        }
+        for (String column : SCALAR_COLUMNS.stream().sorted().toList()) {
+            sql.add("CREATE INDEX IF NOT EXISTS " + table + "_" + column + "_idx ON " + table +
+                    " (" + column + ")");
+        }
+        return sql;
+    }
+
+    /**
+     * Add the filter columns and indexes to an existing embedding table.
+     *
+     * @param ds    Data source pointing at the pgvector database
+     * @param table Embedding table name
+     */
+    public static void apply(DataSource ds, String table) throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            for (String sql : statements(table)) {
+                LOG.debugf("[filter-columns] %s", sql);
+                st.execute(sql);
+            }
+        }
+        LOG.infof("[filter-columns] Materialized %s and %s on %s", ARRAY_COLUMNS, SCALAR_COLUMNS, table);
+    }
+
+    /**
+     * SQL expression turning a comma-separated text value into a text[] without empty entries.
+     */
+    public static String arrayExpression(String source) {
+        return "array_remove(regexp_split_to_array(" + source + ", '\\s*,\\s*'), '')";
+    }
+
+    public static boolean isArrayColumn(String key) {
+        return ARRAY_COLUMNS.contains(key);
+    }
+
+    public static boolean isScalarColumn(String key) {
+        return SCALAR_COLUMNS.contains(key);
+    }
+}
@@ -0,0 +1,430 @@
+package org.chappie.bot.rag;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import javax.sql.DataSource;
+
+import org.jboss.logging.Logger;
+import org.postgresql.PGConnection;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.ContainsString;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+/**
+ * Embedding store over a PgVectorEmbeddingStore table with metadata {@link Filter} support
+ * that is pushed into SQL instead of post-filtering a large top-k. It can be used wherever an
+ * {@code EmbeddingStore<TextSegment>} is expected (e.g. EmbeddingStoreContentRetriever);
+ * writes go to an optional delegate store, without one the store is search-only.
+ *
+ * Filter semantics:
+ * - topics, categories, extensions are lists: IsEqualTo/IsIn match when the row's list
+ *   overlaps the given values, so {@code metadataKey("topics").isEqualTo("security")} matches
+ *   "security,oidc". With {@link FilterColumns} this is {@code topics && ARRAY[...]},
+ *   served by the GIN index; otherwise the JSON string is split on the fly.
+ * - quarkus_version, repo_path use the typed B-tree columns when present.
+ * - Any other key compares {@code metadata->>'key'} as text.
+ * - Range filters (IsGreaterThan etc.) and ContainsString always use the JSON value, cast to
+ *   the comparison value's type or matched with LIKE, as PgVectorEmbeddingStore does.
+ * - IsNotEqualTo/IsNotIn/Not also match rows where the key is missing, like
+ *   PgVectorEmbeddingStore's JSON filters.
+ *
+ * The vector scan uses pgvector's iterative index scan so that selective filters still return
+ * a full top-k. Score is computed like PgVectorEmbeddingStore: (2 - cosine distance) / 2.
+ */
+public class FilteredVectorSearch implements EmbeddingStore<TextSegment> {
+
+    private static final Logger LOG = Logger.getLogger(FilteredVectorSearch.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final DataSource ds;
+    private final String table;
+    private final boolean filterColumns;
+    private final int probes;
+    private final int efSearch;
+    private final EmbeddingStore<TextSegment> writes;
+
+    // Physical connections that already carry the session settings (pooled connections are reused)
+    private final Set<Object> configured = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+
+    /**
+     * @param ds            Data source pointing at the pgvector database
+     * @param table         Embedding table name (e.g. rag_documents)
+     * @param filterColumns Whether the table has the typed columns from {@link FilterColumns}
+     * @param probes        ivfflat.probes for the session (0 = server default)
+     */
+    public FilteredVectorSearch(DataSource ds, String table, boolean filterColumns, int probes) {
+        this(ds, table, filterColumns, probes, 0);
+    }
+
+    /**
+     * @param efSearch hnsw.ef_search for the session (0 = server default)
+     */
+    public FilteredVectorSearch(DataSource ds, String table, boolean filterColumns, int probes, int efSearch) {
+        this(ds, table, filterColumns, probes, efSearch, null);
+    }
+
+    /**
+     * @param writes Store that receives add* calls for the same table (e.g. a PgVectorEmbeddingStore),
+     *               null for a search-only store
+     */
+    public FilteredVectorSearch(DataSource ds, String table, boolean filterColumns, int probes, int efSearch,
+                                EmbeddingStore<TextSegment> writes) {
+        this.ds = ds;
+        this.table = table;
+        this.filterColumns = filterColumns;
+        this.probes = probes;
+        this.efSearch = efSearch;
+        this.writes = writes;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return writes().add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        writes().add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return writes().add(embedding, textSegment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return writes().addAll(embeddings);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        return writes().addAll(embeddings, embedded);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        writes().addAll(ids, embeddings, embedded);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(request, params);
+
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        try (Connection conn = ds.getConnection()) {
+            configureSession(conn);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        double score = rs.getDouble("score");
+                        if (score < request.minScore()) {
+                            continue;
+                        }
+                        matches.add(new EmbeddingMatch<>(
+                                score,
+                                rs.getString("embedding_id"),
+                                parseVector(rs.getString("embedding")),
+                                toSegment(rs.getString("text"), rs.getString("metadata"))));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Filtered vector search failed on " + table, e);
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * Return the query plan for a search request, useful to check which indexes a filter hits.
+     */
+    public String explain(EmbeddingSearchRequest request) throws SQLException {
+        return String.join("\n", runExplain("EXPLAIN ", request)) + "\n";
+    }
+
+    /**
+     * Execute a search request under EXPLAIN ANALYZE and report how much work it did.
+     */
+    public PlanWork measure(EmbeddingSearchRequest request) throws SQLException {
+        String json = String.join("\n", runExplain("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) ", request));
+        try {
+            JsonNode plan = MAPPER.readTree(json).get(0).get("Plan");
+            long buffers = plan.path("Shared Hit Blocks").asLong() + plan.path("Shared Read Blocks").asLong();
+            return new PlanWork(rowsRead(plan), buffers);
+        } catch (Exception e) {
+            throw new SQLException("Cannot parse plan for " + table, e);
+        }
+    }
+
+    /**
+     * Rows produced by table and index scans, including rows they discarded through a filter.
+     */
+    private static long rowsRead(JsonNode node) {
+        long rows = 0;
+        if (node.has("Relation Name")) {
+            rows = (node.path("Actual Rows").asLong() + node.path("Rows Removed by Filter").asLong()
+                    + node.path("Rows Removed by Index Recheck").asLong()) * node.path("Actual Loops").asLong(1);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            rows += rowsRead(child);
+        }
+        return rows;
+    }
+
+    private List<String> runExplain(String prefix, EmbeddingSearchRequest request) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = prefix + buildQuery(request, params);
+
+        List<String> lines = new ArrayList<>();
+        try (Connection conn = ds.getConnection()) {
+            configureSession(conn);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    String buildQuery(EmbeddingSearchRequest request, List<Object> params) {
+        String vector = request.queryEmbedding().vectorAsList().toString();
+
+        StringBuilder where = new StringBuilder();
+        List<Object> filterParams = new ArrayList<>();
+        if (request.filter() != null) {
+            where.append(" WHERE ");
+            appendFilter(request.filter(), where, filterParams);
+        }
+
+        // Materialized CTE + re-sort as recommended for relaxed_order iterative scans
+        params.add(vector);
+        params.add(vector);
+        params.addAll(filterParams);
+        params.add(vector);
+        return "WITH candidates AS MATERIALIZED (" +
+                "SELECT embedding_id, embedding, text, metadata, " +
+                "embedding <=> ?::vector AS distance, (2 - (embedding <=> ?::vector)) / 2 AS score " +
+                "FROM " + table + where +
+                " ORDER BY embedding <=> ?::vector LIMIT " + request.maxResults() +
+                ") SELECT * FROM candidates ORDER BY distance";
+    }
+
+    private void appendFilter(Filter filter, StringBuilder sql, List<Object> params) {
+        if (filter instanceof And and) {
+            sql.append('(');
+            appendFilter(and.left(), sql, params);
+            sql.append(" AND ");
+            appendFilter(and.right(), sql, params);
+            sql.append(')');
+        } else if (filter instanceof Or or) {
+            sql.append('(');
+            appendFilter(or.left(), sql, params);
+            sql.append(" OR ");
+            appendFilter(or.right(), sql, params);
+            sql.append(')');
+        } else if (filter instanceof Not not) {
+            sql.append("NOT coalesce(");
+            appendFilter(not.expression(), sql, params);
+            sql.append(", false)");
+        } else if (filter instanceof IsEqualTo eq) {
+            appendComparison(eq.key(), List.of(eq.comparisonValue()), sql, params);
+        } else if (filter instanceof IsIn in) {
+            appendComparison(in.key(), in.comparisonValues(), sql, params);
+        } else if (filter instanceof IsNotEqualTo ne) {
+            sql.append("NOT coalesce(");
+            appendComparison(ne.key(), List.of(ne.comparisonValue()), sql, params);
+            sql.append(", false)");
+        } else if (filter instanceof IsNotIn notIn) {
+            sql.append("NOT coalesce(");
+            appendComparison(notIn.key(), notIn.comparisonValues(), sql, params);
+            sql.append(", false)");
+        } else if (filter instanceof IsGreaterThan gt) {
+            appendRange(gt.key(), ">", gt.comparisonValue(), sql, params);
+        } else if (filter instanceof IsGreaterThanOrEqualTo gte) {
+            appendRange(gte.key(), ">=", gte.comparisonValue(), sql, params);
+        } else if (filter instanceof IsLessThan lt) {
+            appendRange(lt.key(), "<", lt.comparisonValue(), sql, params);
+        } else if (filter instanceof IsLessThanOrEqualTo lte) {
+            appendRange(lte.key(), "<=", lte.comparisonValue(), sql, params);
+        } else if (filter instanceof ContainsString contains) {
+            sql.append(jsonValue(contains.key())).append(" LIKE ?");
+            params.add("%" + contains.comparisonValue().replaceAll("([\\\\%_])", "\\\\$1") + "%");
+        } else {
+            throw new IllegalArgumentException("Unsupported filter: " + filter.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Range comparison on the JSON value, cast to the SQL type of the comparison value.
+     */
+    private static void appendRange(String key, String operator, Object value, StringBuilder sql, List<Object> params) {
+        String type;
+        if (value instanceof Integer) {
+            type = "int";
+        } else if (value instanceof Long) {
+            type = "bigint";
+        } else if (value instanceof Float) {
+            type = "real";
+        } else if (value instanceof Number) {
+            type = "float8";
+        } else if (value instanceof UUID) {
+            type = "uuid";
+        } else {
+            type = "text";
+        }
+        sql.append('(').append(jsonValue(key)).append(")::").append(type)
+                .append(' ').append(operator).append(" ?::").append(type);
+        params.add(value instanceof Number ? value : String.valueOf(value));
+    }
+
+    private static String jsonValue(String key) {
+        return "(metadata->>'" + key.replace("'", "''") + "')";
+    }
+
+    /**
+     * Equality/membership on one metadata key. For list-valued keys a row matches when any of
+     * its values is among the given ones (array overlap, GIN-indexable).
+     */
+    private void appendComparison(String key, Collection<?> values, StringBuilder sql, List<Object> params) {
+        String placeholders = String.join(", ", values.stream().map(v -> "?").toList());
+        for (Object value : values) {
+            params.add(String.valueOf(value));
+        }
+
+        if (FilterColumns.isArrayColumn(key)) {
+            String column = filterColumns ? key
+                    : FilterColumns.arrayExpression("metadata->>'" + key + "'");
+            sql.append(column).append(" && ARRAY[").append(placeholders).append("]::text[]");
+        } else if (filterColumns && FilterColumns.isScalarColumn(key)) {
+            sql.append(key).append(" IN (").append(placeholders).append(')');
+        } else {
+            sql.append(jsonValue(key)).append(" IN (").append(placeholders).append(')');
+        }
+    }
+
+    /**
+     * Enable pgvector iterative index scans so filtered queries keep scanning the index until
+     * enough rows pass the filter. Older pgvector versions lack these settings; that only
+     * costs recall on very selective filters, so failures are logged and ignored.
+     * Settings are applied once per physical connection so pooled callers pay no extra
+     * round trips per query.
+     */
+    private void configureSession(Connection conn) throws SQLException {
+        Object physical = conn.isWrapperFor(PGConnection.class) ? conn.unwrap(PGConnection.class) : conn;
+        if (!configured.add(physical)) {
+            return;
+        }
+        trySet(conn, "SET ivfflat.iterative_scan = relaxed_order");
+        trySet(conn, "SET hnsw.iterative_scan = relaxed_order");
+        if (probes > 0) {
+            trySet(conn, "SET ivfflat.probes = " + probes);
+        }
+        if (efSearch > 0) {
+            trySet(conn, "SET hnsw.ef_search = " + efSearch);
+        }
+    }
+
+    private EmbeddingStore<TextSegment> writes() {
+        if (writes == null) {
+            throw new UnsupportedOperationException("Search-only store for " + table + ", no delegate for writes");
+        }
+        return writes;
+    }
+
+    private static void trySet(Connection conn, String sql) {
+        try (Statement st = conn.createStatement()) {
+            st.execute(sql);
+        } catch (SQLException e) {
+            LOG.debugf("[search] Ignoring '%s': %s", sql, e.getMessage());
+        }
+    }
+
+    private static TextSegment toSegment(String text, String metadataJson) {
+        Metadata metadata = new Metadata();
+        if (metadataJson != null) {
+            try {
+                metadata = new Metadata(MAPPER.readValue(metadataJson, MAP_TYPE));
+            } catch (Exception e) {
+                LOG.debugf("[search] Could not parse metadata: %s", e.getMessage());
+            }
+        }
+        return TextSegment.from(text == null ? "" : text, metadata);
+    }
+
+    /**
+     * Work done by one executed query, from EXPLAIN ANALYZE.
+     */
+    public static class PlanWork {
+
+        /** Rows returned or filtered out by table/index scans. */
+        public final long rowsRead;
+        /** Shared buffers hit or read. */
+        public final long buffers;
+
+        public PlanWork(long rowsRead, long buffers) {
+            this.rowsRead = rowsRead;
+            this.buffers = buffers;
+        }
+
+        public PlanWork plus(PlanWork other) {
+            return new PlanWork(rowsRead + other.rowsRead, buffers + other.buffers);
+        }
+    }
+
+    private static Embedding parseVector(String value) {
+        if (value == null || value.length() < 2) {
+            return new Embedding(new float[0]);
+        }
+        String[] parts = value.substring(1, value.length() - 1).split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i].trim());
+        }
+        return new Embedding(vector);
+    }
+}
@@ -0,0 +1,134 @@
+package org.chappie.bot.rag;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.jboss.logging.Logger;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+/**
+ * Guide-level vectors for two-stage (guide, then chunk) retrieval.
+ *
+ * Each guide gets one text built from its title, AsciiDoc summary, topics, categories and
+ * the section paths produced by {@link MarkdownSemanticSplitter}. Its embedding is stored
+ * in a small table with the same layout as the chunk table, so it can be written by a
+ * regular PgVectorEmbeddingStore and searched by {@link FilteredVectorSearch}.
+ */
+public class GuideIndex {
+
+    private static final Logger LOG = Logger.getLogger(GuideIndex.class);
+
+    public static final String TABLE = "rag_guides";
+
+    /** Guide-level metadata copied onto the guide vector (used for shortlisting and filters). */
+    private static final List<String> GUIDE_KEYS =
+        List.of("repo_path", "title", "url", "quarkus_version", "topics", "categories", "extensions");
+
+    private static final int MAX_SECTION_PATHS = 60;
+
+    /**
+     * Build the text that represents a whole guide.
+     *
+     * @param guideMetadata Metadata of the guide document (before splitting)
+     * @param segments      Chunks produced for the guide
+     * @return Text to embed for the guide
+     */
+    public static String guideText(Metadata guideMetadata, List<TextSegment> segments) {
+        StringBuilder text = new StringBuilder();
+
+        String title = guideMetadata.getString("title");
+        if (title != null) {
+            text.append(title.replace('-', ' ')).append('\n');
+        }
+        appendLine(text, "", guideMetadata.getString("summary"));
+        appendLine(text, "Topics: ", guideMetadata.getString("topics"));
+        appendLine(text, "Categories: ", guideMetadata.getString("categories"));
+
+        // Merged sections carry "A > B | A > C" paths, keep each distinct path once
+        Set<String> sectionPaths = new LinkedHashSet<>();
+        for (TextSegment segment : segments) {
+            String path = segment.metadata().getString("section_path");
+            if (path != null) {
+                for (String part : path.split(" \\| ")) {
+                    if (sectionPaths.size() < MAX_SECTION_PATHS) {
+                        sectionPaths.add(part.trim());
+                    }
+                }
+            }
+        }
+        if (!sectionPaths.isEmpty()) {
+            text.append("Sections:\n");
+            sectionPaths.forEach(p -> text.append(p).append('\n'));
+        }
+
+        return text.toString().trim();
+    }
+
+    /**
+     * Copy the guide-level fields onto the metadata stored with the guide vector.
+     */
+    public static Metadata guideMetadata(Metadata guideMetadata) {
+        Metadata metadata = new Metadata();
+        for (String key : GUIDE_KEYS) {
+            String value = guideMetadata.getString(key);
+            if (value != null) {
+                metadata.put(key, value);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Build the index statements for two-stage retrieval: an HNSW index on the guide vectors
+     * (built after loading, unlike IVFFlat it needs no training data) and, unless the chunk
+     * table already has the indexed repo_path column from {@link FilterColumns}, an expression
+     * index so the second stage can fetch a shortlist's chunks directly.
+     *
+     * @param chunkTable    Chunk table name (e.g. rag_documents)
+     * @param typedRepoPath true if chunkTable has the typed repo_path column
+     */
+    public static List<String> statements(String chunkTable, boolean typedRepoPath) {
+        List<String> sql = new ArrayList<>();
+        sql.add("CREATE INDEX IF NOT EXISTS " + TABLE + "_hnsw_index ON " + TABLE +
+                " USING hnsw (embedding vector_cosine_ops)");
+        sql.add("ANALYZE " + TABLE);
+        if (!typedRepoPath) {
+            sql.add("CREATE INDEX IF NOT EXISTS " + chunkTable + "_repo_path_expr_idx ON " + chunkTable +
+                    " ((metadata->>'repo_path'))");
+            sql.add("ANALYZE " + chunkTable);
+        }
+        return sql;
+    }
+
+    public static void createIndexes(DataSource ds, String chunkTable, boolean typedRepoPath) throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            for (String sql : statements(chunkTable, typedRepoPath)) {
+                LOG.debugf("[guide-index] %s", sql);
+                st.execute(sql);
+            }
+        }
+        LOG.infof("[guide-index] Indexed %s%s", TABLE, typedRepoPath ? "" : " and " + chunkTable + ".repo_path");
+    }
+
+    /**
+     * @return true if the key is stored on the guide vectors (and can filter the first stage)
+     */
+    public static boolean isGuideKey(String key) {
+        return GUIDE_KEYS.contains(key);
+    }
+
+    private static void appendLine(StringBuilder text, String prefix, String value) {
+        if (value != null && !value.isEmpty()) {
+            text.append(prefix).append(value).append('\n');
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.chappie.bot.rag;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+/**
+ * Two-stage retrieval: shortlist guides from {@link GuideIndex#TABLE}, then rank only the
+ * chunks of the shortlisted guides.
+ *
+ * Broad questions tend to match many near-miss chunks from unrelated guides; ranking the
+ * guides first keeps those out and scores a few hundred chunks instead of the whole table.
+ *
+ * The guide vectors only carry guide-level metadata ({@link GuideIndex#isGuideKey}), so the
+ * first stage applies the part of the filter on those keys; the full filter is applied to
+ * the chunks in the second stage.
+ *
+ * Like {@link FilteredVectorSearch} it is an {@code EmbeddingStore<TextSegment>}, so it can back
+ * an EmbeddingStoreContentRetriever; writes go to an optional delegate store, without one the
+ * store is search-only.
+ */
+public class HierarchicalSearch implements EmbeddingStore<TextSegment> {
+
+    private final FilteredVectorSearch guides;
+    private final FilteredVectorSearch chunks;
+    private final int shortlistSize;
+    private final EmbeddingStore<TextSegment> writes;
+
+    /**
+     * @param guides        Search over the guide vectors table
+     * @param chunks        Search over the chunk table
+     * @param shortlistSize Number of guides whose chunks are ranked in the second stage
+     */
+    public HierarchicalSearch(FilteredVectorSearch guides, FilteredVectorSearch chunks, int shortlistSize) {
+        this(guides, chunks, shortlistSize, null);
+    }
+
+    /**
+     * @param writes Store that receives add* calls for the chunk table (e.g. a PgVectorEmbeddingStore),
+     *               null for a search-only store
+     */
+    public HierarchicalSearch(FilteredVectorSearch guides, FilteredVectorSearch chunks, int shortlistSize,
+                              EmbeddingStore<TextSegment> writes) {
+        this.guides = guides;
+        this.chunks = chunks;
+        this.shortlistSize = shortlistSize;
+        this.writes = writes;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return writes().add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        writes().add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        return writes().add(embedding, textSegment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return writes().addAll(embeddings);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        return writes().addAll(embeddings, embedded);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        writes().addAll(ids, embeddings, embedded);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        List<String> shortlist = shortlist(request);
+        if (shortlist.isEmpty()) {
+            return new EmbeddingSearchResult<>(new ArrayList<>());
+        }
+
+        return chunks.search(chunkRequest(request, shortlist));
+    }
+
+    /**
+     * First stage: the repo paths of the guides closest to the query, best first.
+     */
+    public List<String> shortlist(EmbeddingSearchRequest request) {
+        EmbeddingSearchResult<TextSegment> result = guides.search(guideRequest(request));
+
+        Set<String> repoPaths = new LinkedHashSet<>();
+        for (EmbeddingMatch<TextSegment> match : result.matches()) {
+            String repoPath = match.embedded().metadata().getString("repo_path");
+            if (repoPath != null) {
+                repoPaths.add(repoPath);
+            }
+        }
+        return new ArrayList<>(repoPaths);
+    }
+
+    /**
+     * @return First-stage request against the guide vectors
+     */
+    public EmbeddingSearchRequest guideRequest(EmbeddingSearchRequest request) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(request.queryEmbedding())
+                .maxResults(shortlistSize)
+                .filter(guideFilter(request.filter()))
+                .build();
+    }
+
+    /**
+     * @return Second-stage request: the original request limited to the shortlisted guides
+     */
+    public EmbeddingSearchRequest chunkRequest(EmbeddingSearchRequest request, List<String> shortlist) {
+        Filter inShortlist = new IsIn("repo_path", shortlist);
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(request.queryEmbedding())
+                .maxResults(request.maxResults())
+                .minScore(request.minScore())
+                .filter(request.filter() == null ? inShortlist : new And(inShortlist, request.filter()))
+                .build();
+    }
+
+    /**
+     * Relax a filter to the guide-level keys. Conditions on other keys are dropped, which can
+     * only widen the shortlist; the second stage still applies them to the chunks.
+     *
+     * @return Filter for the guide vectors, null if nothing in it applies to guides
+     */
+    static Filter guideFilter(Filter filter) {
+        if (filter == null) {
+            return null;
+        }
+        if (filter instanceof And and) {
+            Filter left = guideFilter(and.left());
+            Filter right = guideFilter(and.right());
+            if (left == null || right == null) {
+                return left == null ? right : left;
+            }
+            return new And(left, right);
+        }
+        if (filter instanceof Or or) {
+            // Dropping either side would narrow the shortlist
+            Filter left = guideFilter(or.left());
+            Filter right = guideFilter(or.right());
+            return left == null || right == null ? null : new Or(left, right);
+        }
+        // A negation is only kept unchanged; relaxing its operand would narrow it
+        return onGuideKeysOnly(filter) ? filter : null;
+    }
+
+    private EmbeddingStore<TextSegment> writes() {
+        if (writes == null) {
+            throw new UnsupportedOperationException("Search-only two-stage store, no delegate for writes");
+        }
+        return writes;
+    }
+
+    private static boolean onGuideKeysOnly(Filter filter) {
+        if (filter instanceof And and) {
+            return onGuideKeysOnly(and.left()) && onGuideKeysOnly(and.right());
+        } else if (filter instanceof Or or) {
+            return onGuideKeysOnly(or.left()) && onGuideKeysOnly(or.right());
+        } else if (filter instanceof Not not) {
+            return onGuideKeysOnly(not.expression());
+        } else if (filter instanceof IsEqualTo eq) {
+            return GuideIndex.isGuideKey(eq.key());
+        } else if (filter instanceof IsIn in) {
+            return GuideIndex.isGuideKey(in.key());
+        } else if (filter instanceof IsNotEqualTo ne) {
+            return GuideIndex.isGuideKey(ne.key());
+        } else if (filter instanceof IsNotIn notIn) {
+            return GuideIndex.isGuideKey(notIn.key());
+        }
+        return false;
+    }
+}
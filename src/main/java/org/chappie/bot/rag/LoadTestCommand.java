@@ -0,0 +1,545 @@
+package org.chappie.bot.rag;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.logging.Logger;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.configuration.supplier.AgroalDataSourceConfigurationSupplier;
+import io.agroal.api.security.NamePrincipal;
+import io.agroal.api.security.SimplePassword;
+import jakarta.inject.Inject;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Load generator for a baked pgvector image.
+ *
+ * 1. Starts the baked image (or connects to an existing database)
+ * 2. Embeds a query corpus with the same BGE model used for ingestion
+ * 3. Drives the similarity search query PgVectorEmbeddingStore issues from virtual-thread
+ *    clients through a pooled DataSource
+ * 4. Ramps the number of clients up step by step
+ * 5. Reports QPS vs p50/p99 latency and Postgres buffer hit ratio per step
+ */
+@Command(
+    name = "load-test",
+    mixinStandardHelpOptions = true,
+    description = "Measure similarity search throughput and latency of a baked pgvector image."
+)
+public class LoadTestCommand implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(LoadTestCommand.class);
+    private static final String TABLE = "rag_documents";
+    private static final double SATURATION_FACTOR = 2.0; // p99 growth that counts as degraded
+    private static final List<String> ITERATIVE_SCAN_MODES = List.of("off", "relaxed_order", "strict_order");
+    private static final List<String> IVFFLAT_ITERATIVE_SCAN_MODES = List.of("off", "relaxed_order");
+
+    private static final List<String> DEFAULT_QUERIES = List.of(
+            "How do I run code on application startup in Quarkus?",
+            "What is Quarkus Dev Mode and how does it work?",
+            "How do I inject beans using CDI in Quarkus?",
+            "How do I secure REST endpoints with OpenID Connect?",
+            "How do I write a REST endpoint that returns JSON?",
+            "How do I use Hibernate ORM with Panache?",
+            "How do I test a Quarkus application?",
+            "How do I build a native executable?",
+            "How do I configure a datasource?",
+            "How do I send messages to Kafka?",
+            "How do I deploy a Quarkus application to Kubernetes?",
+            "How do I add health checks to my application?",
+            "How do I schedule periodic tasks?",
+            "How do I use the Quarkus CLI to create a project?",
+            "How do I enable OpenTelemetry tracing?",
+            "How do I call a REST service with the REST client?");
+
+    @Option(names = "--jdbc-url",
+            description = "Connect to this database instead of starting the baked image")
+    String jdbcUrl;
+
+    @Option(names = "--username", defaultValue = "postgres",
+            description = "Database user (default: ${DEFAULT-VALUE})")
+    String username;
+
+    @Option(names = "--password", defaultValue = "postgres",
+            description = "Database password (default: ${DEFAULT-VALUE})")
+    String password;
+
+    @Option(names = "--quarkus-version",
+            description = "Start ghcr.io/quarkusio/chappie-ingestion-quarkus:<version> (ignored with --jdbc-url or --image)")
+    String quarkusVersion;
+
+    @Option(names = "--image",
+            description = "Baked image to start (ignored with --jdbc-url)")
+    String image;
+
+    @Option(names = "--concurrency", split = ",", defaultValue = "1,2,4,8,16,32,64",
+            description = "Comma-separated client counts, one step each (default: ${DEFAULT-VALUE})")
+    List<Integer> concurrencySteps;
+
+    @Option(names = "--step-seconds", defaultValue = "20",
+            description = "Measured duration of each step (default: ${DEFAULT-VALUE})")
+    int stepSeconds;
+
+    @Option(names = "--warmup-seconds", defaultValue = "5",
+            description = "Unmeasured warm-up before each step (default: ${DEFAULT-VALUE})")
+    int warmupSeconds;
+
+    @Option(names = "--pool-size", defaultValue = "0",
+            description = "Connection pool size (0 = largest concurrency step + 1)")
+    int poolSize;
+
+    @Option(names = "--max-results", defaultValue = "10",
+            description = "Top-k per search (default: ${DEFAULT-VALUE})")
+    int maxResults;
+
+    @Option(names = "--probes", defaultValue = "0",
+            description = "ivfflat.probes per session (0 = server default)")
+    int probes;
+
+    @Option(names = "--ef-search", defaultValue = "0",
+            description = "hnsw.ef_search per session (0 = server default)")
+    int efSearch;
+
+    @Option(names = "--iterative-scan", defaultValue = "off",
+            description = "pgvector 0.8 iterative_scan for the table's vector index: off, relaxed_order or strict_order (HNSW only) (default: ${DEFAULT-VALUE})")
+    String iterativeScan;
+
+    @Option(names = "--queries",
+            description = "File with one query per line (default: built-in Quarkus questions)")
+    Path queriesFile;
+
+    @Option(names = "--output",
+            description = "Also write the curve as CSV to this file")
+    Path output;
+
+    @Inject
+    EmbeddingModel embeddingModel;
+
+    private PostgreSQLContainer<?> pgContainer;
+
+    @Override
+    public void run() {
+        long t0 = System.nanoTime();
+        validateOptions();
+        try {
+            // Load the ONNX model while the baked image starts
+            EmbeddingModelProducer.warmUpInBackground(embeddingModel);
+
+            // 1) Resolve the target database
+            String url = jdbcUrl;
+            if (url == null) {
+                String ref = image != null ? image
+                        : quarkusVersion != null ? "ghcr.io/quarkusio/chappie-ingestion-quarkus:" + quarkusVersion
+                        : null;
+                if (ref == null) {
+                    throw new IllegalArgumentException("One of --jdbc-url, --image or --quarkus-version is required");
+                }
+                LOG.infof("=== Starting baked image %s ===", ref);
+                this.pgContainer = new PostgreSQLContainer<>(DockerImageName.parse(ref).asCompatibleSubstituteFor("postgres"))
+                        .withUsername(username)
+                        .withPassword(password)
+                        .withStartupTimeout(Duration.ofMinutes(5));
+                this.pgContainer.start();
+                url = this.pgContainer.getJdbcUrl();
+            }
+            LOG.infof("[load-test] Target: %s", url);
+
+            // 2) Embed the query corpus
+            List<String> queries = queriesFile != null
+                    ? Files.readAllLines(queriesFile).stream().map(String::trim).filter(q -> !q.isEmpty()).toList()
+                    : DEFAULT_QUERIES;
+            List<Embedding> embeddings = embeddingModel
+                    .embedAll(queries.stream().map(TextSegment::from).toList())
+                    .content();
+            List<String> searches = embeddings.stream().map(e -> storeQuery(TABLE, e, maxResults)).toList();
+            LOG.infof("[load-test] Embedded %d queries", embeddings.size());
+
+            // 3) Ramp up clients
+            int maxClients = Collections.max(concurrencySteps);
+            int pool = poolSize > 0 ? poolSize : maxClients + 1; // +1 for the buffer stats snapshots
+            List<StepResult> results = new ArrayList<>();
+
+            String indexType = vectorIndexType(url);
+            Map<String, String> settings = sessionSettings(indexType);
+            String sessionSql = settings.entrySet().stream()
+                    .map(e -> "SET " + e.getKey() + " = " + e.getValue())
+                    .collect(Collectors.joining("; "));
+            try (AgroalDataSource ds = makePooledDataSource(url, username, password, pool, sessionSql)) {
+                LOG.infof("[load-test] Pool size %d, shared_buffers %s, rows %d, vector index %s",
+                          pool, queryString(ds, "SHOW shared_buffers"),
+                          Long.parseLong(queryString(ds, "SELECT count(*) FROM " + TABLE)),
+                          indexType == null ? "none" : indexType);
+                verifySessionSettings(ds, settings);
+
+                for (int clients : concurrencySteps) {
+                    StepResult result = runStep(ds, searches, clients);
+                    results.add(result);
+                    LOG.infof("[load-test] clients=%3d qps=%8.1f p50=%7.2f ms p99=%7.2f ms errors=%d buffer-hit=%.2f%%",
+                              result.clients, result.qps(), result.p50Ms(), result.p99Ms(),
+                              result.errors, result.bufferHitPercent());
+                }
+            }
+
+            // 4) Report
+            report(results);
+            if (output != null) {
+                writeCsv(results, output);
+                LOG.infof("[load-test] Wrote %s", output);
+            }
+        } catch (Exception e) {
+            LOG.error("[load-test] Failed", e);
+            throw (e instanceof RuntimeException) ? (RuntimeException) e : new RuntimeException(e);
+        } finally {
+            if (pgContainer != null) {
+                LOG.info("[load-test] Stopping baked image container");
+                try {
+                    pgContainer.stop();
+                } catch (Throwable t) {
+                    LOG.warn("Failed to stop baked image container", t);
+                }
+            }
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            LOG.infof("[load-test] Completed in %d ms", ms);
+        }
+    }
+
+    private void validateOptions() {
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("--step-seconds must be positive, got " + stepSeconds);
+        }
+        if (warmupSeconds < 0) {
+            throw new IllegalArgumentException("--warmup-seconds must not be negative, got " + warmupSeconds);
+        }
+        if (concurrencySteps.isEmpty() || concurrencySteps.stream().anyMatch(c -> c <= 0)) {
+            throw new IllegalArgumentException("--concurrency values must be positive, got " + concurrencySteps);
+        }
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("--max-results must be positive, got " + maxResults);
+        }
+        if (!ITERATIVE_SCAN_MODES.contains(iterativeScan)) {
+            throw new IllegalArgumentException("--iterative-scan must be one of " + ITERATIVE_SCAN_MODES + ", got " + iterativeScan);
+        }
+    }
+
+    /**
+     * Access method (ivfflat or hnsw) of the vector index serving {@link #TABLE}, null if none.
+     * The compact schema keeps the index on rag_chunks behind the rag_documents view.
+     */
+    private String vectorIndexType(String url) throws SQLException {
+        String sql = "SELECT indexdef FROM pg_indexes WHERE tablename IN ('" + TABLE + "', '" +
+                     CompactSchema.CHUNKS_TABLE + "') AND indexdef LIKE '%vector_%_ops%'";
+        try (Connection conn = DriverManager.getConnection(url, username, password);
+             Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String definition = rs.getString(1);
+                if (definition.contains(" USING hnsw ")) {
+                    return "hnsw";
+                }
+                if (definition.contains(" USING ivfflat ")) {
+                    return "ivfflat";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Session settings run on every new pooled connection. Iterative scan is set only for the
+     * index type actually in use; IVFFlat supports off and relaxed_order only.
+     */
+    private Map<String, String> sessionSettings(String indexType) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        if (probes > 0) {
+            settings.put("ivfflat.probes", String.valueOf(probes));
+        }
+        if (efSearch > 0) {
+            settings.put("hnsw.ef_search", String.valueOf(efSearch));
+        }
+        if (!"off".equals(iterativeScan)) {
+            if (indexType == null) {
+                LOG.warnf("[load-test] %s has no vector index, ignoring --iterative-scan=%s", TABLE, iterativeScan);
+            } else if ("ivfflat".equals(indexType) && !IVFFLAT_ITERATIVE_SCAN_MODES.contains(iterativeScan)) {
+                throw new IllegalArgumentException("--iterative-scan=" + iterativeScan + " is not supported by the " +
+                        "IVFFlat index on " + TABLE + ", use one of " + IVFFLAT_ITERATIVE_SCAN_MODES);
+            } else {
+                settings.put(indexType + ".iterative_scan", iterativeScan);
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Read back the session settings actually in effect. pgvector is not loaded yet when the
+     * pool's initial SQL runs, so ivfflat.* and hnsw.* are accepted as placeholders and an
+     * invalid value only turns into a warning (and the default) once the library loads.
+     * Loading it here with a vector cast makes such values visible and fails the run.
+     */
+    private static void verifySessionSettings(AgroalDataSource ds, Map<String, String> expected) throws SQLException {
+        Map<String, String> actual = new LinkedHashMap<>();
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("SELECT '[1]'::vector");
+            for (String name : List.of("ivfflat.probes", "ivfflat.iterative_scan", "hnsw.ef_search", "hnsw.iterative_scan")) {
+                try (ResultSet rs = st.executeQuery("SHOW " + name)) {
+                    actual.put(name, rs.next() ? rs.getString(1) : null);
+                } catch (SQLException e) {
+                    // Setting unknown to this pgvector version
+                    actual.put(name, null);
+                }
+            }
+        }
+        LOG.infof("[load-test] Session settings in effect: %s", actual);
+
+        for (Map.Entry<String, String> setting : expected.entrySet()) {
+            if (!setting.getValue().equals(actual.get(setting.getKey()))) {
+                throw new IllegalStateException(setting.getKey() + " = " + setting.getValue() +
+                        " was not applied, the server uses " + actual.get(setting.getKey()));
+            }
+        }
+    }
+
+    /**
+     * The query PgVectorEmbeddingStore.search sends for an unfiltered request with minScore 0:
+     * vector inlined as a literal, score and distance computed in SQL, ordered by distance.
+     */
+    static String storeQuery(String table, Embedding embedding, int maxResults) {
+        String vector = Arrays.toString(embedding.vector());
+        return "SELECT (2 - (embedding <=> '" + vector + "')) / 2 AS score, embedding_id, embedding, text, metadata " +
+               "FROM " + table + " " +
+               "WHERE round(cast(float8 (embedding <=> '" + vector + "') as numeric), 8) <= round(2 - 2 * 0.0, 8) " +
+               "ORDER BY embedding <=> '" + vector + "' LIMIT " + maxResults + ";";
+    }
+
+    /**
+     * Execute one search and read every column, as the store does when building matches.
+     */
+    private static void search(AgroalDataSource ds, String sql) throws SQLException {
+        try (Connection conn = ds.getConnection(); PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rs.getDouble("score");
+                rs.getString("embedding_id");
+                rs.getString("embedding");
+                rs.getString("text");
+                rs.getString("metadata");
+            }
+        }
+    }
+
+    private StepResult runStep(AgroalDataSource ds, List<String> searches, int clients) throws Exception {
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(warmupSeconds).toNanos();
+        long measureEnd = warmupEnd + Duration.ofSeconds(stepSeconds).toNanos();
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        AtomicReference<Exception> firstError = new AtomicReference<>();
+        List<long[]> perClient = Collections.synchronizedList(new ArrayList<>());
+        long[] buffersBefore = new long[2];
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.submit(() -> {
+                    LatencyRecorder recorder = new LatencyRecorder();
+                    long start;
+                    while ((start = System.nanoTime()) < measureEnd) {
+                        String sql = searches.get(Math.floorMod(next.getAndIncrement(), searches.size()));
+                        try {
+                            search(ds, sql);
+                            // Only requests that fall entirely inside the measured window count
+                            long end = System.nanoTime();
+                            if (start >= warmupEnd && end <= measureEnd) {
+                                recorder.add(end - start);
+                            }
+                        } catch (SQLException | RuntimeException e) {
+                            errors.incrementAndGet();
+                            if (firstError.compareAndSet(null, e)) {
+                                LOG.warnf(e, "[load-test] clients=%d first error: %s", clients, e.getMessage());
+                            }
+                        }
+                    }
+                    perClient.add(recorder.toArray());
+                });
+            }
+
+            Thread.sleep(Math.max(0, (warmupEnd - System.nanoTime()) / 1_000_000));
+            readBufferStats(ds, buffersBefore);
+        } // close() waits for all clients
+
+        long[] buffersAfter = new long[2];
+        readBufferStats(ds, buffersAfter);
+
+        long[] latencies = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new StepResult(clients, latencies, stepSeconds, errors.get(),
+                buffersAfter[0] - buffersBefore[0], buffersAfter[1] - buffersBefore[1]);
+    }
+
+    /**
+     * Print the QPS vs latency curve and the highest step whose p99 stays within
+     * {@link #SATURATION_FACTOR} of the baseline (first step). Steps with errors are not
+     * representative and are left out of both.
+     */
+    private void report(List<StepResult> results) {
+        LOG.info("=== Load test results ===");
+        LOG.info("[load-test] clients       qps   p50 (ms)   p99 (ms)  buffer-hit");
+        for (StepResult r : results) {
+            LOG.infof("[load-test] %7d  %8.1f  %9.2f  %9.2f  %9.2f%%",
+                      r.clients, r.qps(), r.p50Ms(), r.p99Ms(), r.bufferHitPercent());
+        }
+
+        List<StepResult> clean = results.stream().filter(r -> r.errors == 0).toList();
+        for (StepResult r : results) {
+            if (r.errors > 0) {
+                LOG.warnf("[load-test] Excluding %d clients from saturation analysis: %d errors", r.clients, r.errors);
+            }
+        }
+        if (clean.isEmpty()) {
+            LOG.warn("[load-test] Every step had errors, no sustainable throughput reported");
+            return;
+        }
+        double baselineP99 = clean.get(0).p99Ms();
+        StepResult sustainable = clean.get(0);
+        for (StepResult r : clean) {
+            if (r.p99Ms() > baselineP99 * SATURATION_FACTOR) {
+                LOG.infof("[load-test] p99 degraded beyond %.1fx baseline at %d clients", SATURATION_FACTOR, r.clients);
+                break;
+            }
+            if (r.qps() > sustainable.qps()) {
+                sustainable = r;
+            }
+        }
+        LOG.infof("[load-test] Max sustainable: %.1f qps at %d clients (p99 %.2f ms)",
+                  sustainable.qps(), sustainable.clients, sustainable.p99Ms());
+    }
+
+    private static void writeCsv(List<StepResult> results, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("clients,qps,p50_ms,p99_ms,errors,buffer_hits,buffer_reads");
+        for (StepResult r : results) {
+            lines.add(String.format(Locale.ROOT, "%d,%.1f,%.3f,%.3f,%d,%d,%d",
+                    r.clients, r.qps(), r.p50Ms(), r.p99Ms(), r.errors, r.bufferHits, r.bufferReads));
+        }
+        Files.write(file, lines);
+    }
+
+    /**
+     * Snapshot cumulative shared buffer hits and reads for user tables, indexes and TOAST.
+     */
+    private static void readBufferStats(AgroalDataSource ds, long[] into) throws SQLException {
+        String sql = "SELECT " +
+                "coalesce(sum(heap_blks_hit + coalesce(idx_blks_hit, 0) + coalesce(toast_blks_hit, 0) + coalesce(tidx_blks_hit, 0)), 0), " +
+                "coalesce(sum(heap_blks_read + coalesce(idx_blks_read, 0) + coalesce(toast_blks_read, 0) + coalesce(tidx_blks_read, 0)), 0) " +
+                "FROM pg_statio_user_tables";
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            into[0] = rs.getLong(1);
+            into[1] = rs.getLong(2);
+        }
+    }
+
+    private static String queryString(AgroalDataSource ds, String sql) throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static AgroalDataSource makePooledDataSource(String jdbc, String user, String pass, int size,
+                                                         String sessionSql) throws SQLException {
+        AgroalDataSourceConfigurationSupplier config = new AgroalDataSourceConfigurationSupplier()
+                .connectionPoolConfiguration(pool -> pool
+                        .minSize(size)
+                        .maxSize(size)
+                        .acquisitionTimeout(Duration.ofSeconds(30))
+                        .connectionFactoryConfiguration(cf -> cf
+                                .jdbcUrl(jdbc)
+                                .principal(new NamePrincipal(user))
+                                .credential(new SimplePassword(pass))
+                                .initialSql(sessionSql)));
+        return AgroalDataSource.from(config);
+    }
+
+    /** Growable per-client latency buffer, avoids boxing on the hot path. */
+    private static class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class StepResult {
+        final int clients;
+        final long[] sortedLatencies;
+        final int seconds;
+        final long errors;
+        final long bufferHits;
+        final long bufferReads;
+
+        StepResult(int clients, long[] sortedLatencies, int seconds, long errors, long bufferHits, long bufferReads) {
+            this.clients = clients;
+            this.sortedLatencies = sortedLatencies;
+            this.seconds = seconds;
+            this.errors = errors;
+            this.bufferHits = bufferHits;
+            this.bufferReads = bufferReads;
+        }
+
+        double qps() {
+            return sortedLatencies.length / (double) seconds;
+        }
+
+        double p50Ms() {
+            return percentile(0.50);
+        }
+
+        double p99Ms() {
+            return percentile(0.99);
+        }
+
+        double bufferHitPercent() {
+            long total = bufferHits + bufferReads;
+            return total == 0 ? 100.0 : 100.0 * bufferHits / total;
+        }
+
+        private double percentile(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(p * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.chappie.bot.rag;
+
+import org.jboss.logging.Logger;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.inject.Inject;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Loads the embedding model and computes a few embeddings without touching Docker or a database.
+ *
+ * Used as the training run that records the AppCDS archive (see src/main/docker/Dockerfile.jvm)
+ * and as a quick way to measure startup-to-first-embedding time.
+ */
+@Command(
+    name = "warmup",
+    mixinStandardHelpOptions = true,
+    description = "Load and warm the embedding model, report startup-to-first-embedding time."
+)
+public class WarmupCommand implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(WarmupCommand.class);
+
+    @Option(names = "--iterations", defaultValue = "10",
+            description = "Embeddings computed after warm-up (default: ${DEFAULT-VALUE})")
+    int iterations;
+
+    @Inject
+    EmbeddingModel embeddingModel;
+
+    @Override
+    public void run() {
+        // First call creates and warms the model
+        embeddingModel.embed("Quarkus");
+        LOG.infof("[warmup] Startup-to-first-embedding: %d ms", EmbeddingModelProducer.millisSinceJvmStart());
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            embeddingModel.embed("How do I run code on application startup in Quarkus? " + i);
+        }
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        if (iterations > 0) {
+            LOG.infof("[warmup] %d embeddings in %d ms (%.2f ms each)", iterations, ms, ms / (double) iterations);
+        }
+    }
+}
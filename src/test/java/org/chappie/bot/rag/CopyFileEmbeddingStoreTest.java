@@ -0,0 +1,197 @@
+package org.chappie.bot.rag;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+
+class CopyFileEmbeddingStoreTest {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesHeaderTuplesAndTrailer() throws IOException {
+        Path file = dir.resolve("rows.copy.gz");
+        String id = UUID.randomUUID().toString();
+        try (CopyFileEmbeddingStore store = new CopyFileEmbeddingStore(file, 2)) {
+            store.addAll(List.of(id), List.of(Embedding.from(new float[] { 0.5f, -1.0f })),
+                    List.of(TextSegment.from("Dev Services", Metadata.from("title", "dev-services"))));
+            assertEquals(1, store.rowCount());
+        }
+
+        try (DataInputStream in = open(file)) {
+            assertHeader(in);
+
+            assertEquals(4, in.readShort());
+
+            UUID uuid = UUID.fromString(id);
+            assertEquals(16, in.readInt());
+            assertEquals(uuid.getMostSignificantBits(), in.readLong());
+            assertEquals(uuid.getLeastSignificantBits(), in.readLong());
+
+            assertEquals(4 + 4 * 2, in.readInt());
+            assertEquals(2, in.readShort());
+            assertEquals(0, in.readShort());
+            assertEquals(0.5f, in.readFloat());
+            assertEquals(-1.0f, in.readFloat());
+
+            assertEquals("Dev Services", readText(in));
+            assertEquals(Map.of("title", "dev-services"), new ObjectMapper().readValue(readText(in), Map.class));
+
+            assertEquals(-1, in.readShort());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void writesNullTextAndMetadataWithoutSegment() throws IOException {
+        Path file = dir.resolve("bare.copy.gz");
+        try (CopyFileEmbeddingStore store = new CopyFileEmbeddingStore(file, 1)) {
+            store.add(Embedding.from(new float[] { 1.0f }));
+        }
+
+        try (DataInputStream in = open(file)) {
+            assertHeader(in);
+            assertEquals(4, in.readShort());
+            in.skipNBytes(4 + 16 + 4 + 4 + 4);
+            assertEquals(-1, in.readInt());
+            assertEquals(-1, in.readInt());
+            assertEquals(-1, in.readShort());
+        }
+    }
+
+    @Test
+    void rejectsMismatchedSizesAndDimensions() throws IOException {
+        Path file = dir.resolve("invalid.copy.gz");
+        try (CopyFileEmbeddingStore store = new CopyFileEmbeddingStore(file, 2)) {
+            Embedding embedding = Embedding.from(new float[] { 0.1f, 0.2f });
+            assertThrows(IllegalArgumentException.class,
+                    () -> store.addAll(List.of("a", "b"), List.of(embedding), null));
+            assertThrows(IllegalArgumentException.class,
+                    () -> store.add(Embedding.from(new float[] { 0.1f })));
+            assertEquals(0, store.rowCount());
+        }
+
+        // Rejected rows leave no partial tuple behind
+        try (DataInputStream in = open(file)) {
+            assertHeader(in);
+            assertEquals(-1, in.readShort());
+        }
+    }
+
+    /**
+     * Load a written file the way the image init script does and read it back through the
+     * store that consumers use.
+     */
+    @Test
+    void loadsIntoPgvectorAndReadsBackThroughPgVectorEmbeddingStore() throws IOException, SQLException {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is required");
+
+        Path file = dir.resolve("rag_documents.copy.gz");
+        Embedding devServices = Embedding.from(new float[] { 1.0f, 0.0f, 0.0f });
+        Embedding bare = Embedding.from(new float[] { 0.0f, 0.0f, 1.0f });
+        String devServicesId = UUID.randomUUID().toString();
+        String bareId = UUID.randomUUID().toString();
+        Metadata metadata = Metadata.from("title", "dev-services").put("section_level", 2);
+        try (CopyFileEmbeddingStore store = new CopyFileEmbeddingStore(file, 3)) {
+            store.addAll(List.of(devServicesId, UUID.randomUUID().toString()),
+                    List.of(devServices, Embedding.from(new float[] { 0.0f, 1.0f, 0.0f })),
+                    List.of(TextSegment.from("Dev Services \u00e9t\u00e9", metadata),
+                            TextSegment.from("Dev UI", Metadata.from("title", "dev-ui"))));
+            store.add(bareId, bare);
+        }
+
+        try (PostgreSQLContainer<?> pg = new PostgreSQLContainer<>(
+                DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"))) {
+            pg.start();
+            pg.copyFileToContainer(MountableFile.forHostPath(file), "/tmp/rag_documents.copy.gz");
+
+            PGSimpleDataSource ds = new PGSimpleDataSource();
+            ds.setUrl(pg.getJdbcUrl());
+            ds.setUser(pg.getUsername());
+            ds.setPassword(pg.getPassword());
+            try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+                st.execute("CREATE EXTENSION IF NOT EXISTS vector");
+                st.execute(CopyFileEmbeddingStore.createTableSql("rag_documents", 3));
+                st.execute(CopyFileEmbeddingStore.copySql("rag_documents", "/tmp/rag_documents.copy.gz"));
+            }
+
+            EmbeddingStore<TextSegment> store = PgVectorEmbeddingStore.datasourceBuilder()
+                    .datasource(ds)
+                    .table("rag_documents")
+                    .dimension(3)
+                    .createTable(false)
+                    .build();
+
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(devServices)
+                    .maxResults(3)
+                    .build()).matches();
+            assertEquals(3, matches.size());
+
+            EmbeddingMatch<TextSegment> top = matches.get(0);
+            assertEquals(devServicesId, top.embeddingId());
+            assertEquals(1.0, top.score(), 1e-6);
+            assertArrayEquals(devServices.vector(), top.embedding().vector());
+            assertEquals("Dev Services \u00e9t\u00e9", top.embedded().text());
+            assertEquals("dev-services", top.embedded().metadata().getString("title"));
+            assertEquals(2, top.embedded().metadata().getInteger("section_level"));
+
+            EmbeddingMatch<TextSegment> nulls = matches.stream()
+                    .filter(m -> m.embeddingId().equals(bareId))
+                    .findFirst()
+                    .orElseThrow();
+            assertArrayEquals(bare.vector(), nulls.embedding().vector());
+            assertNull(nulls.embedded());
+        }
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new GZIPInputStream(Files.newInputStream(file)));
+    }
+
+    private static void assertHeader(DataInputStream in) throws IOException {
+        assertArrayEquals(SIGNATURE, in.readNBytes(SIGNATURE.length));
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+}
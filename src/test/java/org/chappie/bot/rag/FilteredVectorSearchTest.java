@@ -0,0 +1,139 @@
+package org.chappie.bot.rag;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.ContainsString;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+
+class FilteredVectorSearchTest {
+
+    private static final Embedding QUERY = Embedding.from(new float[] { 0.25f, 0.5f });
+    private static final String VECTOR = "[0.25, 0.5]";
+
+    private final FilteredVectorSearch typed = new FilteredVectorSearch(null, "rag_documents", true, 0);
+    private final FilteredVectorSearch json = new FilteredVectorSearch(null, "rag_documents", false, 0);
+
+    @Test
+    void noFilterBindsQueryVectorThreeTimes() {
+        List<Object> params = new ArrayList<>();
+        String sql = typed.buildQuery(request(null), params);
+
+        assertFalse(sql.contains("WHERE"));
+        assertTrue(sql.contains("LIMIT 5"));
+        assertEquals(List.of(VECTOR, VECTOR, VECTOR), params);
+    }
+
+    @Test
+    void filterParamsSitBetweenSelectAndOrderByVectors() {
+        List<Object> params = new ArrayList<>();
+        Filter filter = new And(metadataKey("topics").isEqualTo("security"),
+                metadataKey("quarkus_version").isEqualTo("3.31"));
+        typed.buildQuery(request(filter), params);
+
+        assertEquals(List.of(VECTOR, VECTOR, "security", "3.31", VECTOR), params);
+    }
+
+    @Test
+    void arrayKeyUsesOverlapOnTypedColumn() {
+        List<Object> params = new ArrayList<>();
+        String sql = typed.buildQuery(request(new IsIn("topics", List.of("security", "oidc"))), params);
+
+        assertTrue(sql.contains(" WHERE topics && ARRAY[?, ?]::text[]"), sql);
+        assertEquals(Set.of("security", "oidc"), Set.copyOf(params.subList(2, 4)));
+    }
+
+    @Test
+    void arrayKeyWithoutFilterColumnsSplitsJson() {
+        String sql = json.buildQuery(request(metadataKey("topics").isEqualTo("security")), new ArrayList<>());
+
+        assertTrue(sql.contains(FilterColumns.arrayExpression("metadata->>'topics'") + " && ARRAY[?]::text[]"), sql);
+    }
+
+    @Test
+    void scalarKeyUsesTypedColumnOnlyWhenPresent() {
+        Filter filter = metadataKey("quarkus_version").isEqualTo("3.31");
+
+        assertTrue(typed.buildQuery(request(filter), new ArrayList<>()).contains(" WHERE quarkus_version IN (?)"));
+        assertTrue(json.buildQuery(request(filter), new ArrayList<>())
+                .contains(" WHERE (metadata->>'quarkus_version') IN (?)"));
+    }
+
+    @Test
+    void otherKeysFallBackToJson() {
+        String sql = typed.buildQuery(request(metadataKey("section_title").isEqualTo("Configuration")),
+                new ArrayList<>());
+
+        assertTrue(sql.contains(" WHERE (metadata->>'section_title') IN (?)"), sql);
+    }
+
+    @Test
+    void negationsMatchRowsWithoutTheKey() {
+        String notIn = typed.buildQuery(request(new IsNotIn("section_title", List.of("Intro"))), new ArrayList<>());
+        assertTrue(notIn.contains(" WHERE NOT coalesce((metadata->>'section_title') IN (?), false)"), notIn);
+
+        String notEqual = typed.buildQuery(request(metadataKey("topics").isNotEqualTo("security")), new ArrayList<>());
+        assertTrue(notEqual.contains(" WHERE NOT coalesce(topics && ARRAY[?]::text[], false)"), notEqual);
+
+        String not = typed.buildQuery(request(new Not(metadataKey("quarkus_version").isEqualTo("3.31"))),
+                new ArrayList<>());
+        assertTrue(not.contains(" WHERE NOT coalesce(quarkus_version IN (?), false)"), not);
+    }
+
+    @Test
+    void rangeFiltersCastTheJsonValue() {
+        List<Object> params = new ArrayList<>();
+        String sql = typed.buildQuery(request(new IsGreaterThan("section_level", 1)), params);
+        assertTrue(sql.contains(" WHERE ((metadata->>'section_level'))::int > ?::int"), sql);
+        assertEquals(List.of(VECTOR, VECTOR, 1, VECTOR), params);
+
+        String text = typed.buildQuery(request(new IsLessThanOrEqualTo("quarkus_version", "3.31")), new ArrayList<>());
+        assertTrue(text.contains(" WHERE ((metadata->>'quarkus_version'))::text <= ?::text"), text);
+    }
+
+    @Test
+    void containsStringUsesEscapedLike() {
+        List<Object> params = new ArrayList<>();
+        String sql = typed.buildQuery(request(new ContainsString("section_title", "100%_done")), params);
+
+        assertTrue(sql.contains(" WHERE (metadata->>'section_title') LIKE ?"), sql);
+        assertEquals("%100\\%\\_done%", params.get(2));
+    }
+
+    @Test
+    void unsupportedFilterIsRejected() {
+        Filter custom = object -> true;
+        assertThrows(IllegalArgumentException.class,
+                () -> typed.buildQuery(request(custom), new ArrayList<>()));
+    }
+
+    @Test
+    void writesNeedADelegate() {
+        assertThrows(UnsupportedOperationException.class, () -> typed.add(QUERY));
+    }
+
+    private static EmbeddingSearchRequest request(Filter filter) {
+        return EmbeddingSearchRequest.builder()
+                .queryEmbedding(QUERY)
+                .maxResults(5)
+                .filter(filter)
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package org.chappie.bot.rag;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+class HierarchicalSearchTest {
+
+    private static final Filter TOPIC = metadataKey("topics").isEqualTo("security");
+    private static final Filter VERSION = metadataKey("quarkus_version").isEqualTo("3.31");
+    private static final Filter SECTION = metadataKey("section_title").isEqualTo("Configuration");
+
+    @Test
+    void keepsGuideLevelConditions() {
+        Filter filter = new And(TOPIC, VERSION);
+        assertEquals(filter, HierarchicalSearch.guideFilter(filter));
+    }
+
+    @Test
+    void dropsSectionLevelConditions() {
+        assertNull(HierarchicalSearch.guideFilter(SECTION));
+        assertEquals(TOPIC, HierarchicalSearch.guideFilter(new And(SECTION, TOPIC)));
+    }
+
+    @Test
+    void dropsOrAndNotThatMentionSectionKeys() {
+        assertNull(HierarchicalSearch.guideFilter(new Or(TOPIC, SECTION)));
+        assertNull(HierarchicalSearch.guideFilter(new Not(new And(TOPIC, SECTION))));
+        assertEquals(new Not(TOPIC), HierarchicalSearch.guideFilter(new Not(TOPIC)));
+    }
+
+    @Test
+    void writesNeedADelegate() {
+        HierarchicalSearch search = new HierarchicalSearch(null, null, 8);
+        assertThrows(UnsupportedOperationException.class,
+                () -> search.add(Embedding.from(new float[] { 0.1f })));
+    }
+}